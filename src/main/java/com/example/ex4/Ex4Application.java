@@ -2,15 +2,18 @@ package com.example.ex4;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Ex4 Spring Boot application.
  * <p>
  * This class bootstraps the Spring application context
- * and starts the embedded server.
+ * and starts the embedded server. Scheduling is enabled for background
+ * maintenance tasks such as the inventory ledger write-back.
  * </p>
  */
 @SpringBootApplication
+@EnableScheduling
 public class Ex4Application {
 
     /**
@@ -0,0 +1,435 @@
+package com.example.ex4.components;
+
+import com.example.ex4.exceptions.InsufficientStockException;
+import com.example.ex4.repo.OrderItemRepository;
+import com.example.ex4.repo.OrderRepository;
+import com.example.ex4.repo.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-memory inventory reservation ledger for flash sales.
+ * <p>
+ * Holds the units of every product that are still free to reserve in an
+ * {@link AtomicInteger} updated with compare-and-set, so carts racing for the
+ * same product never take a lock and carts for different products never touch
+ * the same counter. Units are reserved when a product goes into a cart, given
+ * back when it leaves the cart or the reservation expires, and turned into a
+ * sale at checkout without touching the product row.
+ * </p>
+ * <p>
+ * Orders placed through the ledger are saved with {@code inventoryApplied = false}.
+ * A scheduled write-back sums their units per product and subtracts them with one
+ * update per product, then marks the orders as applied in the same transaction. The
+ * orders table is therefore the durable journal of the ledger: on startup every order
+ * that was not written back before a shutdown or crash is applied first, and only then
+ * are the counters loaded from the product table.
+ * </p>
+ * <p>
+ * The ledger is off by default ({@code inventory.ledger.enabled}), in which case
+ * every method is a no-op and checkout decrements the product rows directly. It
+ * assumes a single application instance owns the stock.
+ * </p>
+ */
+@Component
+public class InventoryLedger {
+
+    /** Whether reservations and checkout go through the ledger. */
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean enabled;
+
+    /** Seconds a reservation lives after the cart last changed. */
+    @Value("${inventory.ledger.reservation-ttl-seconds:900}")
+    private long reservationTtlSeconds;
+
+    /** Maximum number of orders written back in one transaction. */
+    private static final int WRITE_BACK_BATCH = 500;
+
+    /** Repository used to load stock and write sold units back. */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Repository used to find and mark orders that were not written back yet. */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Repository used to sum the units of orders that were not written back yet. */
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    /** Runs every write-back batch in its own transaction. */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Cache whose products are invalidated after their stock is written back. */
+    @Autowired
+    private ProductCatalogCache catalogCache;
+
+    /** Facet index whose in-stock flags are refreshed after a write-back. */
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    /** Units free to reserve keyed by product id. */
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    /** Open reservations keyed by cart reservation id. */
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    /**
+     * Units held by one cart. Guarded by its own monitor, so only requests of the
+     * same cart ever wait for each other.
+     */
+    private static final class Reservation {
+
+        /** Reserved units keyed by product id. */
+        private final Map<Long, Integer> units = new HashMap<>();
+
+        /** Time in milliseconds after which the reservation may be swept. */
+        private long expiresAt;
+
+        /** Set once the reservation was sold or swept; a closed reservation is never reused. */
+        private boolean closed;
+    }
+
+    /**
+     * Writes back orders left over from the previous run, then loads the counters
+     * from the product table.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        for (Object[] row : productRepository.findAllInventories()) {
+            available.put((Long) row[0], new AtomicInteger((Integer) row[1]));
+        }
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Returns whether the ledger is enabled.
+     *
+     * @return true if reservations and checkout go through the ledger
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserves units of a product for a cart.
+     *
+     * @param reservationId the cart's reservation id
+     * @param productId     the product to reserve
+     * @param quantity      the number of units to reserve
+     * @return true if the units were reserved (always true when the ledger is disabled)
+     */
+    public boolean reserve(String reservationId, long productId, int quantity) {
+        if (!enabled) {
+            return true;
+        }
+        return withReservation(reservationId, reservation -> {
+            if (!take(productId, quantity)) {
+                return false;
+            }
+            reservation.units.merge(productId, quantity, Integer::sum);
+            return true;
+        });
+    }
+
+    /**
+     * Gives back every unit of a product reserved by a cart.
+     *
+     * @param reservationId the cart's reservation id
+     * @param productId     the product removed from the cart
+     */
+    public void release(String reservationId, long productId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+        synchronized (reservation) {
+            Integer units = reservation.units.remove(productId);
+            if (units != null) {
+                give(productId, units);
+            }
+        }
+    }
+
+    /**
+     * Gives back every unit reserved by a cart and closes its reservation.
+     *
+     * @param reservationId the cart's reservation id
+     */
+    public void releaseAll(String reservationId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation != null) {
+            close(reservationId, reservation);
+        }
+    }
+
+    /**
+     * Turns a cart's reservation into a sale inside the checkout transaction.
+     * <p>
+     * Lines whose reservation expired are reserved again on the spot. If any line
+     * cannot be covered, the units that could be taken stay reserved for the cart
+     * and an exception naming every short line is thrown. Otherwise the reservation
+     * is closed, units held beyond the sold quantities are given back, and the sold
+     * units are given back too if the transaction rolls back.
+     * </p>
+     *
+     * @param reservationId the cart's reservation id
+     * @param quantities    units sold keyed by product id
+     * @param names         product names keyed by product id, used in failure messages
+     * @throws InsufficientStockException if any product has too few free units left
+     */
+    public void commit(String reservationId, Map<Long, Integer> quantities, Map<Long, String> names) {
+        List<String> failedLines = withReservation(reservationId, reservation -> {
+            List<String> failed = new ArrayList<>();
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                long productId = line.getKey();
+                int missing = line.getValue() - reservation.units.getOrDefault(productId, 0);
+                if (missing <= 0) {
+                    continue;
+                }
+                if (take(productId, missing)) {
+                    reservation.units.merge(productId, missing, Integer::sum);
+                } else {
+                    AtomicInteger free = available.get(productId);
+                    int left = reservation.units.getOrDefault(productId, 0) + (free == null ? 0 : Math.max(free.get(), 0));
+                    failed.add(names.get(productId) + ": only " + left + " left (requested " + line.getValue() + ")");
+                }
+            }
+            if (failed.isEmpty()) {
+                reservation.units.forEach((productId, units) ->
+                        give(productId, units - quantities.getOrDefault(productId, 0)));
+                reservation.units.clear();
+                reservation.closed = true;
+                reservations.remove(reservationId, reservation);
+            }
+            return failed;
+        });
+        if (!failedLines.isEmpty()) {
+            throw new InsufficientStockException(failedLines);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    quantities.forEach(InventoryLedger.this::give);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the units of a product that are free to reserve.
+     *
+     * @param productId the product id
+     * @return the free units, or null if the ledger is disabled or does not know the product
+     */
+    public Integer getAvailable(long productId) {
+        AtomicInteger counter = available.get(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * Starts counting a product the ledger does not know yet.
+     *
+     * @param productId the product id
+     * @param inventory the product's stock
+     */
+    public void track(long productId, int inventory) {
+        if (enabled) {
+            available.putIfAbsent(productId, new AtomicInteger(inventory));
+        }
+    }
+
+    /**
+     * Records an admin change of a product's stock.
+     * <p>
+     * Applies the difference rather than the new value, so units held by carts and
+     * units sold but not yet written back stay accounted for. A product the ledger
+     * does not know yet starts at the new stock.
+     * </p>
+     *
+     * @param productId    the product id
+     * @param oldInventory the stock stored before the change
+     * @param newInventory the stock stored by the change
+     */
+    public void restock(long productId, int oldInventory, int newInventory) {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger counter = available.putIfAbsent(productId, new AtomicInteger(newInventory));
+        if (counter != null) {
+            counter.addAndGet(newInventory - oldInventory);
+        }
+    }
+
+    /**
+     * Forgets a deleted product.
+     *
+     * @param productId the product id
+     */
+    public void remove(long productId) {
+        available.remove(productId);
+    }
+
+    /**
+     * Writes the units of every order placed through the ledger back to the product table.
+     * <p>
+     * Each batch subtracts the summed units of up to {@value #WRITE_BACK_BATCH} orders with
+     * one update per product and marks those orders as applied in the same transaction.
+     * </p>
+     *
+     * @return the number of orders written back
+     */
+    public synchronized int flush() {
+        if (!enabled) {
+            return 0;
+        }
+        List<Long> orderIds = orderRepository.findIdsWithUnappliedInventory();
+        for (int from = 0; from < orderIds.size(); from += WRITE_BACK_BATCH) {
+            List<Long> batch = orderIds.subList(from, Math.min(from + WRITE_BACK_BATCH, orderIds.size()));
+            List<Long> productIds = transactionTemplate.execute(status -> {
+                List<Long> touched = new ArrayList<>();
+                for (Object[] row : orderItemRepository.sumQuantityByProductForOrders(batch)) {
+                    productRepository.subtractInventory((Long) row[0], ((Number) row[1]).intValue());
+                    touched.add((Long) row[0]);
+                }
+                orderRepository.markInventoryApplied(batch);
+                return touched;
+            });
+            for (Object[] row : productRepository.findInventoriesByIdIn(productIds)) {
+                catalogCache.invalidateProduct((Long) row[0]);
+                facetIndex.updateStock((Long) row[0], (Integer) row[1] > 0);
+            }
+        }
+        return orderIds.size();
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically writes sold units back to the product table.
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:1000}")
+    public void writeBack() {
+        flush();
+    }
+
+    /**
+     * Periodically gives back the units of reservations whose cart has not changed
+     * within the reservation time-to-live.
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.sweep-interval-ms:30000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Reservation>> iterator = reservations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Reservation> entry = iterator.next();
+            Reservation reservation = entry.getValue();
+            synchronized (reservation) {
+                if (reservation.expiresAt < now) {
+                    close(entry.getKey(), reservation);
+                }
+            }
+        }
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Runs an action on a cart's open reservation under its monitor, opening a new
+     * reservation if needed and extending its expiry.
+     *
+     * @param reservationId the cart's reservation id
+     * @param action        the action to run
+     * @param <T>           the action's result type
+     * @return the action's result
+     */
+    private <T> T withReservation(String reservationId, Function<Reservation, T> action) {
+        while (true) {
+            Reservation reservation = reservations.computeIfAbsent(reservationId, id -> new Reservation());
+            synchronized (reservation) {
+                if (!reservation.closed) {
+                    reservation.expiresAt = System.currentTimeMillis() + reservationTtlSeconds * 1000;
+                    return action.apply(reservation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives back every unit of a reservation and removes it.
+     *
+     * @param reservationId the cart's reservation id
+     * @param reservation   the reservation to close
+     */
+    private void close(String reservationId, Reservation reservation) {
+        synchronized (reservation) {
+            reservation.units.forEach(this::give);
+            reservation.units.clear();
+            reservation.closed = true;
+            reservations.remove(reservationId, reservation);
+        }
+    }
+
+    /**
+     * Takes units from a product's free count if enough are left.
+     *
+     * @param productId the product id
+     * @param quantity  the units to take
+     * @return true if the units were taken
+     */
+    private boolean take(long productId, int quantity) {
+        AtomicInteger counter = available.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        int current;
+        do {
+            current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    /**
+     * Gives units back to a product's free count.
+     *
+     * @param productId the product id
+     * @param quantity  the units to give back
+     */
+    private void give(long productId, int quantity) {
+        AtomicInteger counter = available.get(productId);
+        if (counter != null && quantity > 0) {
+            counter.addAndGet(quantity);
+        }
+    }
+}
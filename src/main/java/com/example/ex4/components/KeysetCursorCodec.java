@@ -0,0 +1,114 @@
+package com.example.ex4.components;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts keyset scroll positions to opaque, URL-safe cursor strings and back.
+ * <p>
+ * Each key is written together with a short type tag so the decoded values have
+ * the same Java type as the entity attributes they are compared against.
+ * </p>
+ */
+@Component
+public class KeysetCursorCodec {
+
+    /**
+     * Encodes a keyset position as a cursor string.
+     *
+     * @param position the position of the last element of a page
+     * @return the cursor, or null if the position is not a keyset position
+     */
+    public String encode(ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.isInitial()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Object> key : keyset.getKeys().entrySet()) {
+            if (!builder.isEmpty()) {
+                builder.append('\n');
+            }
+            builder.append(key.getKey()).append('=').append(encodeValue(key.getValue()));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor string into a forward keyset position.
+     *
+     * @param cursor the cursor produced by {@link #encode(ScrollPosition)}; null or blank for the first page
+     * @return the keyset position to continue from
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public KeysetScrollPosition decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            int separator = line.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            keys.put(line.substring(0, separator), decodeValue(line.substring(separator + 1)));
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Writes a single key value with its type tag.
+     *
+     * @param value the key value
+     * @return the tagged value
+     */
+    private String encodeValue(Object value) {
+        if (value instanceof Long) {
+            return "l:" + value;
+        }
+        if (value instanceof Integer) {
+            return "i:" + value;
+        }
+        if (value instanceof Double) {
+            return "d:" + value;
+        }
+        if (value instanceof LocalDateTime) {
+            return "t:" + value;
+        }
+        if (value instanceof String) {
+            return "s:" + URLEncoder.encode((String) value, StandardCharsets.UTF_8);
+        }
+        throw new IllegalArgumentException("Unsupported cursor value: " + value);
+    }
+
+    /**
+     * Reads a single tagged key value.
+     *
+     * @param value the tagged value
+     * @return the key value with its original type
+     */
+    private Object decodeValue(String value) {
+        if (value.length() < 2) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String raw = value.substring(2);
+        return switch (value.substring(0, 2)) {
+            case "l:" -> Long.parseLong(raw);
+            case "i:" -> Integer.parseInt(raw);
+            case "d:" -> Double.parseDouble(raw);
+            case "t:" -> LocalDateTime.parse(raw);
+            case "s:" -> URLDecoder.decode(raw, StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("Malformed cursor");
+        };
+    }
+}
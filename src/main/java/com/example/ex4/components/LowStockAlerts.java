@@ -0,0 +1,128 @@
+package com.example.ex4.components;
+
+import com.example.ex4.dto.LowStockAlert;
+import com.example.ex4.repo.Order;
+import com.example.ex4.repo.OrderItem;
+import com.example.ex4.repo.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Low-stock alerts for the admin, raised from placed orders.
+ * <p>
+ * For every batch delivered by the {@link OutboxDispatcher}, reads the current stock
+ * of the ordered products and raises an alert for each one at or below
+ * {@code inventory.low-stock-threshold}. Alerts live in memory; an alert is dropped
+ * as soon as its product is restocked above the threshold or deleted.
+ * </p>
+ */
+@Component
+public class LowStockAlerts implements OrderPlacedListener {
+
+    /** Stock at or below which a product is reported. */
+    @Value("${inventory.low-stock-threshold:5}")
+    private int threshold;
+
+    /** Repository used to read the current stock. */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Ledger holding the live stock when it is enabled. */
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    /** Open alerts keyed by product id. */
+    private final Map<Long, LowStockAlert> alerts = new ConcurrentHashMap<>();
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Checks the stock of every product in the delivered orders.
+     *
+     * @param orders the placed orders with their items and products
+     */
+    @Override
+    public void onOrdersPlaced(List<Order> orders) {
+        Map<Long, String> names = new HashMap<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getOrderItems()) {
+                names.put(item.getProduct().getId(), item.getProduct().getProductName());
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        readStock(names.keySet()).forEach((productId, inventory) -> {
+            if (inventory <= threshold) {
+                alerts.merge(productId, new LowStockAlert(productId, names.get(productId), inventory, now),
+                        (open, raised) -> {
+                            open.setInventory(inventory);
+                            return open;
+                        });
+            } else {
+                alerts.remove(productId);
+            }
+        });
+    }
+
+    /**
+     * Returns the open alerts with their current stock, lowest stock first.
+     * Products restocked above the threshold or deleted since are dropped.
+     *
+     * @return the open alerts
+     */
+    public List<LowStockAlert> getAlerts() {
+        List<Long> productIds = List.copyOf(alerts.keySet());
+        Map<Long, Integer> stock = readStock(productIds);
+        for (Long productId : productIds) {
+            Integer inventory = stock.get(productId);
+            LowStockAlert alert = alerts.get(productId);
+            if (inventory == null || inventory > threshold) {
+                alerts.remove(productId);
+            } else if (alert != null) {
+                alert.setInventory(inventory);
+            }
+        }
+        return alerts.values().stream()
+                .sorted(Comparator.comparingInt(LowStockAlert::getInventory))
+                .toList();
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Reads the current stock of products, from the ledger when it is enabled.
+     *
+     * @param productIds the product ids
+     * @return stock keyed by product id; deleted products are missing
+     */
+    private Map<Long, Integer> readStock(Collection<Long> productIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (inventoryLedger.isEnabled()) {
+            for (Long productId : productIds) {
+                Integer available = inventoryLedger.getAvailable(productId);
+                if (available != null) {
+                    stock.put(productId, available);
+                }
+            }
+            return stock;
+        }
+        if (!productIds.isEmpty()) {
+            for (Object[] row : productRepository.findInventoriesByIdIn(productIds)) {
+                stock.put((Long) row[0], (Integer) row[1]);
+            }
+        }
+        return stock;
+    }
+}
@@ -1,17 +1,20 @@
 package com.example.ex4.components;
 
-import com.example.ex4.repo.CartItem;
 import com.example.ex4.repo.Category;
 import com.example.ex4.repo.UserAccount;
 import com.example.ex4.services.CategoryService;
 import com.example.ex4.services.UserAccountService;
 import com.example.ex4.session.CartSession;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.ui.Model;
 import java.security.Principal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Configuration class responsible for setting up the navigation bar attributes.
@@ -23,6 +26,9 @@ import java.util.List;
 @Configuration
 public class NavbarConfig {
 
+    /** Prefix of the session attribute holding the cached display name of a user. */
+    private static final String USERNAME_ATTRIBUTE = "navbarUsername:";
+
     /** Service for retrieving product categories. */
     @Autowired
     private CategoryService categoryService;
@@ -35,11 +41,23 @@ public class NavbarConfig {
     @Resource(name = "cartSessionBean")
     private CartSession cartSession;
 
+    /** Current HTTP session, used to remember the display name of the signed-in user. */
+    @Autowired
+    private HttpSession httpSession;
+
+    /** Number of username lookups answered from the HTTP session. */
+    private final LongAdder usernameHits = new LongAdder();
+
+    /** Number of username lookups that had to query the database. */
+    private final LongAdder usernameMisses = new LongAdder();
+
     /**
      * Populates the model with navigation bar data.
      * <p>
      * Adds categories, cart size, and, if available, the current user's name to the model.
      * This method should be invoked before rendering views containing the navbar.
+     * Categories come from the category cache and the user's name is kept in the
+     * HTTP session, so a regular page render runs no extra queries.
      * </p>
      *
      * @param model     the model to which navbar attributes are added
@@ -48,15 +66,48 @@ public class NavbarConfig {
     public void setNavbar(Model model, Principal principal) {
 
         List<Category> categories = categoryService.getAllCategories();
-        List<CartItem> cartItems = cartSession.getCartItems();
 
         if (principal != null) {
-            UserAccount user = userAccountService.getByEmail(principal.getName());
-            model.addAttribute("name", user.getUsername());
+            model.addAttribute("name", getUsername(principal));
         }
 
         model.addAttribute("cartSize", cartSession.getCartSize());
         model.addAttribute("categories", categories);
     }
 
+    /**
+     * Returns the display name of the signed-in user, reading it from the
+     * database only once per session.
+     *
+     * @param principal the security principal of the signed-in user
+     * @return the username to show in the navbar
+     */
+    private String getUsername(Principal principal) {
+        String attribute = USERNAME_ATTRIBUTE + principal.getName();
+        String username = (String) httpSession.getAttribute(attribute);
+        if (username != null) {
+            usernameHits.increment();
+        } else {
+            usernameMisses.increment();
+            UserAccount user = userAccountService.getByEmail(principal.getName());
+            username = user.getUsername();
+            httpSession.setAttribute(attribute, username);
+        }
+        return username;
+    }
+
+    /**
+     * Returns the navbar cache counters.
+     *
+     * @return a map with the hit and miss counts of the category list and username lookups
+     */
+    public Map<String, Long> getCacheStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("categoryHits", categoryService.getCacheHits());
+        stats.put("categoryMisses", categoryService.getCacheMisses());
+        stats.put("usernameHits", usernameHits.sum());
+        stats.put("usernameMisses", usernameMisses.sum());
+        return stats;
+    }
+
 }
@@ -0,0 +1,24 @@
+package com.example.ex4.components;
+
+import com.example.ex4.repo.Order;
+
+import java.util.List;
+
+/**
+ * Receives the orders delivered by the {@link OutboxDispatcher}.
+ * <p>
+ * Called on the dispatcher thread, after the orders were committed. Delivery is
+ * at-least-once: a listener that throws gets the same orders again on the next
+ * poll, and after a restart orders that were not marked delivered yet are
+ * delivered again, so listeners should tolerate seeing an order twice.
+ * </p>
+ */
+public interface OrderPlacedListener {
+
+    /**
+     * Handles a batch of placed orders.
+     *
+     * @param orders the placed orders, oldest first, with their items, products and categories loaded
+     */
+    void onOrdersPlaced(List<Order> orders);
+}
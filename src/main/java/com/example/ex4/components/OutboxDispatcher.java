@@ -0,0 +1,190 @@
+package com.example.ex4.components;
+
+import com.example.ex4.repo.Order;
+import com.example.ex4.repo.OrderRepository;
+import com.example.ex4.repo.OutboxEvent;
+import com.example.ex4.repo.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Polls the transactional outbox and delivers placed orders to every {@link OrderPlacedListener}.
+ * <p>
+ * Checkout only saves an {@link OutboxEvent} next to the order, so the work that
+ * follows an order (sales counters, search popularity, low-stock alerts) runs here,
+ * off the request path. Each poll reads up to {@code outbox.batch-size} pending
+ * events, loads their orders with one query, hands them to each listener, and marks
+ * the events processed once every listener took them.
+ * </p>
+ * <p>
+ * A listener that throws leaves the batch pending: the failure is recorded on the
+ * events and the batch is retried on the next poll, but only for the listeners that
+ * failed. Events that keep failing are given up after {@code outbox.max-attempts}
+ * polls and keep their last error. Events are processed by one application instance.
+ * </p>
+ */
+@Component
+public class OutboxDispatcher {
+
+    /** Maximum number of events delivered per batch. */
+    @Value("${outbox.batch-size:100}")
+    private int batchSize;
+
+    /** Failed deliveries after which an event is given up. */
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    /** Hours a processed event is kept before it is deleted. */
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+
+    /** Repository holding the outbox. */
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    /** Repository used to load the orders of a batch. */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Runs every update of the outbox in its own transaction. */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Listeners the orders are delivered to. */
+    @Autowired
+    private List<OrderPlacedListener> listeners;
+
+    /** Listeners that already took a pending event, keyed by event id; kept across retries. */
+    private final Map<Long, Set<OrderPlacedListener>> delivered = new HashMap<>();
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Delivers pending events until the outbox is empty or a batch fails.
+     *
+     * @return the number of events marked processed
+     */
+    public synchronized int dispatch() {
+        int processed = 0;
+        while (true) {
+            List<OutboxEvent> batch = outboxEventRepository.findByProcessedAtIsNullOrderByIdAsc(Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return processed;
+            }
+            if (!deliver(batch)) {
+                return processed;
+            }
+            processed += batch.size();
+            if (batch.size() < batchSize) {
+                return processed;
+            }
+        }
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically delivers pending events.
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        dispatch();
+    }
+
+    /**
+     * Periodically deletes events processed longer ago than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    public void purgeProcessed() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.deleteProcessedBefore(cutoff));
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Delivers one batch to every listener that has not taken it yet and records the outcome.
+     *
+     * @param batch pending events, oldest first
+     * @return true if the batch was marked processed
+     */
+    private boolean deliver(List<OutboxEvent> batch) {
+        List<Long> orderIds = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            if (OutboxEvent.ORDER_PLACED.equals(event.getType())) {
+                orderIds.add(event.getAggregateId());
+            }
+        }
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findWithItemsByIdIn(orderIds)) {
+            orders.put(order.getId(), order);
+        }
+
+        String error = null;
+        for (OrderPlacedListener listener : listeners) {
+            List<OutboxEvent> events = batch.stream()
+                    .filter(event -> !delivered.getOrDefault(event.getId(), Set.of()).contains(listener))
+                    .toList();
+            List<Order> pending = events.stream()
+                    .map(event -> orders.get(event.getAggregateId()))
+                    .filter(order -> order != null)
+                    .sorted(Comparator.comparingLong(Order::getId))
+                    .toList();
+            try {
+                if (!pending.isEmpty()) {
+                    listener.onOrdersPlaced(pending);
+                }
+                events.forEach(event -> delivered.computeIfAbsent(event.getId(), id -> new HashSet<>()).add(listener));
+            } catch (RuntimeException e) {
+                error = listener.getClass().getSimpleName() + ": " + e;
+            }
+        }
+
+        List<Long> eventIds = batch.stream().map(OutboxEvent::getId).toList();
+        if (error == null) {
+            markProcessed(eventIds);
+            return true;
+        }
+        String message = error.length() > OutboxEvent.MAX_ERROR_LENGTH
+                ? error.substring(0, OutboxEvent.MAX_ERROR_LENGTH) : error;
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.recordFailure(eventIds, message));
+        List<Long> givenUp = batch.stream()
+                .filter(event -> event.getAttempts() + 1 >= maxAttempts)
+                .map(OutboxEvent::getId)
+                .toList();
+        if (!givenUp.isEmpty()) {
+            markProcessed(givenUp);
+        }
+        return false;
+    }
+
+    /**
+     * Marks events processed and forgets their delivery progress.
+     *
+     * @param eventIds ids of the events
+     */
+    private void markProcessed(List<Long> eventIds) {
+        transactionTemplate.executeWithoutResult(
+                status -> outboxEventRepository.markProcessed(eventIds, LocalDateTime.now()));
+        eventIds.forEach(delivered::remove);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.ex4.components;
+
+import com.example.ex4.repo.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, read-through in-process cache for the product catalog.
+ * <p>
+ * Keeps single products keyed by id and product listings keyed by a
+ * listing name (e.g. a category). Entries are evicted when the region
+ * grows past its maximum size (least recently used first) or when their
+ * time-to-live expires. Any product write invalidates the product entry
+ * and every listing, since a single product can appear in several listings.
+ * </p>
+ */
+@Component
+public class ProductCatalogCache {
+
+    /** Maximum number of entries kept per cache region. */
+    @Value("${catalog.cache.max-size:1000}")
+    private int maxSize;
+
+    /** Time-to-live of a cache entry in seconds. */
+    @Value("${catalog.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    /** Cached products keyed by product id. */
+    private final Region<Long, Product> products = new Region<>();
+
+    /** Cached product listings keyed by listing name. */
+    private final Region<String, List<Product>> listings = new Region<>();
+
+    /** Number of lookups answered from the cache. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Number of lookups that had to go to the loader. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Number of entries removed because of size or TTL limits. */
+    private final LongAdder evictions = new LongAdder();
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Returns the cached product with the given id, loading it on a miss.
+     *
+     * @param id     the product id
+     * @param loader supplies the product from the database; must not return null
+     * @return the cached or freshly loaded product
+     */
+    public Product getProduct(long id, Supplier<Product> loader) {
+        return products.get(id, loader);
+    }
+
+    /**
+     * Returns a cached product if present, without loading it.
+     *
+     * @param id the product id
+     * @return the cached product, or null on a miss
+     */
+    public Product peekProduct(long id) {
+        return products.peek(id);
+    }
+
+    /**
+     * Stores an already loaded product in the cache.
+     *
+     * @param product the product to cache
+     */
+    public void putProduct(Product product) {
+        products.put(product.getId(), product, products.generation());
+    }
+
+    /**
+     * Returns the cached listing with the given key, loading it on a miss.
+     *
+     * @param key    the listing key, e.g. {@code "category:Home"}
+     * @param loader supplies the listing from the database
+     * @return the cached or freshly loaded listing
+     */
+    public List<Product> getListing(String key, Supplier<List<Product>> loader) {
+        return listings.get(key, loader);
+    }
+
+    /**
+     * Drops a single product and all listings after the product was written.
+     *
+     * @param id the id of the changed product
+     */
+    public void invalidateProduct(long id) {
+        products.remove(id);
+        listings.clear();
+    }
+
+    /**
+     * Drops every cached product and listing.
+     */
+    public void invalidateAll() {
+        products.clear();
+        listings.clear();
+    }
+
+    /**
+     * Returns the cache counters and current region sizes.
+     *
+     * @return a map of counter name to value
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("products", (long) products.size());
+        stats.put("listings", (long) listings.size());
+        return stats;
+    }
+
+    //========================================
+    //            Cache Region
+    //========================================
+
+    /**
+     * A single LRU + TTL bounded map guarded by its own lock.
+     * <p>
+     * Loaders run outside the lock; a generation counter makes sure a value
+     * loaded before an invalidation is not written back afterwards.
+     * </p>
+     */
+    private class Region<K, V> {
+
+        private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long generation;
+
+        V get(K key, Supplier<V> loader) {
+            V cached = peek(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            long startGeneration = generation();
+            V loaded = loader.get();
+            put(key, loaded, startGeneration);
+            return loaded;
+        }
+
+        synchronized V peek(K key) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired()) {
+                map.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(K key, V value, long startGeneration) {
+            if (value == null || startGeneration != generation) {
+                return;
+            }
+            map.put(key, new Entry<>(value, System.nanoTime() + ttlSeconds * 1_000_000_000L));
+            Iterator<Entry<V>> eldest = map.values().iterator();
+            while (map.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void remove(K key) {
+            generation++;
+            map.remove(key);
+        }
+
+        synchronized void clear() {
+            generation++;
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * A cached value with its expiry time.
+     */
+    private record Entry<V>(V value, long expiresAt) {
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
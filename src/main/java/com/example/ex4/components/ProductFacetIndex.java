@@ -0,0 +1,438 @@
+package com.example.ex4.components;
+
+import com.example.ex4.dto.ProductFilter;
+import com.example.ex4.dto.ProductFilterResult;
+import com.example.ex4.repo.Product;
+import com.example.ex4.repo.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet index used by the product filter API.
+ * <p>
+ * Every product gets a dense slot number, and every facet value (category, price
+ * bucket, in stock, minimum average rating) keeps a {@link BitSet} of the slots
+ * that have it. A filter is answered by AND-ing the selected facets (OR-ing the
+ * values selected within one facet), and each facet count is the cardinality of
+ * the other selected facets AND-ed with that value, so combining filters never
+ * goes to the database. The index is built at startup and kept up to date by
+ * {@code ProductService} on product writes and new reviews.
+ * </p>
+ * <p>
+ * Slots are handed out in product id order and never reused, so walking the
+ * result bits from the top lists the newest products first.
+ * </p>
+ */
+@Component
+@DependsOn("reviewAggregatesInitializer")
+public class ProductFacetIndex {
+
+    /** Highest minimum rating offered as a filter ("4 stars and up"). */
+    private static final int MAX_MIN_RATING = 4;
+
+    /** Repository used to load product facet values at startup. */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Lower bounds of the price buckets, ascending; the last bucket is open-ended. */
+    @Value("${catalog.facets.price-buckets:0,25,50,100,250,500}")
+    private double[] priceBounds;
+
+    /** Slot of every indexed product keyed by product id. */
+    private final Map<Long, Integer> slots = new HashMap<>();
+
+    /** Product id of every slot. */
+    private long[] productIds = new long[64];
+
+    /** Average rating of every slot, 0 when the product has no reviews. */
+    private double[] ratings = new double[64];
+
+    /** Number of slots handed out so far. */
+    private int slotCount;
+
+    /** Slots of products that still exist. */
+    private final BitSet live = new BitSet();
+
+    /** Slots keyed by category name. */
+    private final Map<String, BitSet> byCategory = new TreeMap<>();
+
+    /** Slots keyed by price bucket index. */
+    private final Map<Integer, BitSet> byPrice = new HashMap<>();
+
+    /** Slots of products with inventory left. */
+    private final BitSet inStock = new BitSet();
+
+    /** Slots keyed by minimum rating: index r holds products averaging at least r stars. */
+    private final BitSet[] byMinRating = new BitSet[MAX_MIN_RATING + 1];
+
+    /** Guards the fields above; filters share the read lock. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes every product before the application starts serving requests.
+     */
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> rows = productRepository.findAllFacetValues();
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            slotCount = 0;
+            live.clear();
+            byCategory.clear();
+            byPrice.clear();
+            inStock.clear();
+            for (int rating = 1; rating <= MAX_MIN_RATING; rating++) {
+                byMinRating[rating] = new BitSet();
+            }
+            for (Object[] row : rows) {
+                int slot = index((Long) row[0], (String) row[1], ((Number) row[2]).doubleValue(),
+                        ((Number) row[3]).intValue());
+                long reviewCount = ((Number) row[5]).longValue();
+                if (reviewCount > 0) {
+                    setRating(slot, ((Number) row[4]).doubleValue() / reviewCount);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a product to the index or updates its facet values, keeping its rating.
+     *
+     * @param product the saved product
+     */
+    public void put(Product product) {
+        String categoryName = product.getCategory() == null ? null : product.getCategory().getCategoryName();
+        lock.writeLock().lock();
+        try {
+            index(product.getId(), categoryName, product.getPrice(), product.getInventory());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the average rating of a product.
+     *
+     * @param productId the product id
+     * @param rating    the new average rating, 0 if the product has no reviews
+     */
+    public void updateRating(long productId, double rating) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(productId);
+            if (slot != null) {
+                setRating(slot, rating);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates whether a product is in stock.
+     *
+     * @param productId the product id
+     * @param inStock   true if the product has inventory left
+     */
+    public void updateStock(long productId, boolean inStock) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(productId);
+            if (slot != null) {
+                this.inStock.set(slot, inStock);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product from the index.
+     *
+     * @param productId the product id
+     */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(productId);
+            if (slot != null) {
+                clearSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a filter and computes the facet counts for it.
+     * <p>
+     * The returned result holds the total and every facet count but no products;
+     * the ids of the requested page are returned next to it, newest first.
+     * </p>
+     *
+     * @param filter the selected facet values and the page to return
+     * @return the page of matching product ids and the facet counts
+     */
+    public Selection filter(ProductFilter filter) {
+        lock.readLock().lock();
+        try {
+            BitSet categories = union(byCategory, filter.getCategory());
+            BitSet prices = union(byPrice, priceBuckets(filter.getPrice()));
+            BitSet stock = filter.isInStock() ? inStock : null;
+            int minRating = Math.min(filter.getMinRating(), MAX_MIN_RATING);
+            BitSet rating = minRating > 0 ? byMinRating[minRating] : null;
+
+            BitSet matches = intersect(categories, prices, stock, rating);
+
+            ProductFilterResult result = new ProductFilterResult();
+            result.setTotal(matches.cardinality());
+
+            BitSet withoutCategory = intersect(null, prices, stock, rating);
+            Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+            byCategory.forEach((name, slotsOfCategory) ->
+                    categoryCounts.put(name, countAnd(withoutCategory, slotsOfCategory)));
+            result.setCategoryCounts(categoryCounts);
+
+            BitSet withoutPrice = intersect(categories, null, stock, rating);
+            Map<String, Integer> priceCounts = new LinkedHashMap<>();
+            for (int bucket = 0; bucket < priceBounds.length; bucket++) {
+                BitSet slotsOfBucket = byPrice.get(bucket);
+                priceCounts.put(priceLabel(bucket), slotsOfBucket == null ? 0 : countAnd(withoutPrice, slotsOfBucket));
+            }
+            result.setPriceCounts(priceCounts);
+
+            result.setInStockCount(countAnd(intersect(categories, prices, null, rating), inStock));
+
+            BitSet withoutRating = intersect(categories, prices, stock, null);
+            Map<Integer, Integer> ratingCounts = new LinkedHashMap<>();
+            for (int stars = MAX_MIN_RATING; stars >= 1; stars--) {
+                ratingCounts.put(stars, countAnd(withoutRating, byMinRating[stars]));
+            }
+            result.setRatingCounts(ratingCounts);
+
+            return new Selection(page(matches, filter.getPage(), filter.getSize()), result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //========================================
+    //            Private Methods
+    //========================================
+
+    /**
+     * Writes the facet values of a product, assigning a slot if it has none.
+     * Must be called with the write lock held.
+     *
+     * @param productId    the product id
+     * @param categoryName the category name; may be null
+     * @param price        the product price
+     * @param inventory    the units in stock
+     * @return the slot of the product
+     */
+    private int index(long productId, String categoryName, double price, int inventory) {
+        Integer slot = slots.get(productId);
+        if (slot == null) {
+            slot = slotCount++;
+            if (slot == productIds.length) {
+                productIds = Arrays.copyOf(productIds, slot * 2);
+                ratings = Arrays.copyOf(ratings, slot * 2);
+            }
+            productIds[slot] = productId;
+            ratings[slot] = 0;
+            slots.put(productId, slot);
+        }
+        double rating = ratings[slot];
+        clearSlot(slot);
+        live.set(slot);
+        if (categoryName != null) {
+            byCategory.computeIfAbsent(categoryName, name -> new BitSet()).set(slot);
+        }
+        byPrice.computeIfAbsent(priceBucket(price), bucket -> new BitSet()).set(slot);
+        inStock.set(slot, inventory > 0);
+        setRating(slot, rating);
+        return slot;
+    }
+
+    /**
+     * Clears a slot from every facet. Must be called with the write lock held.
+     *
+     * @param slot the slot to clear
+     */
+    private void clearSlot(int slot) {
+        live.clear(slot);
+        byCategory.values().removeIf(slotsOfCategory -> {
+            slotsOfCategory.clear(slot);
+            return slotsOfCategory.isEmpty();
+        });
+        byPrice.values().forEach(slotsOfBucket -> slotsOfBucket.clear(slot));
+        inStock.clear(slot);
+        setRating(slot, 0);
+    }
+
+    /**
+     * Stores the average rating of a slot and updates the minimum rating facets.
+     * Must be called with the write lock held.
+     *
+     * @param slot   the slot
+     * @param rating the average rating
+     */
+    private void setRating(int slot, double rating) {
+        ratings[slot] = rating;
+        for (int stars = 1; stars <= MAX_MIN_RATING; stars++) {
+            byMinRating[stars].set(slot, live.get(slot) && rating >= stars);
+        }
+    }
+
+    /**
+     * Returns the bucket index of a price.
+     *
+     * @param price the price
+     * @return the index of the last bucket whose lower bound is not above the price
+     */
+    private int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket + 1 < priceBounds.length && price >= priceBounds[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the label of a price bucket.
+     *
+     * @param bucket the bucket index
+     * @return e.g. "0-25", or "500+" for the last bucket
+     */
+    private String priceLabel(int bucket) {
+        String lower = formatBound(priceBounds[bucket]);
+        return bucket + 1 < priceBounds.length ? lower + "-" + formatBound(priceBounds[bucket + 1]) : lower + "+";
+    }
+
+    /**
+     * Formats a bucket bound without a trailing ".0" for whole amounts.
+     *
+     * @param bound the bound
+     * @return the formatted bound
+     */
+    private String formatBound(double bound) {
+        return bound == Math.rint(bound) ? String.valueOf((long) bound) : String.valueOf(bound);
+    }
+
+    /**
+     * Resolves price bucket labels to bucket indexes, ignoring unknown labels.
+     *
+     * @param labels the selected labels
+     * @return the selected bucket indexes
+     */
+    private List<Integer> priceBuckets(List<String> labels) {
+        List<Integer> buckets = new ArrayList<>();
+        for (int bucket = 0; bucket < priceBounds.length; bucket++) {
+            if (labels.contains(priceLabel(bucket))) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets.isEmpty() && !labels.isEmpty() ? List.of(-1) : buckets;
+    }
+
+    /**
+     * OR-s the slots of the selected values of one facet.
+     *
+     * @param facet    the facet's slots keyed by value
+     * @param selected the selected values
+     * @return the union, or null if nothing is selected (the facet does not filter)
+     */
+    private <K> BitSet union(Map<K, BitSet> facet, List<K> selected) {
+        if (selected.isEmpty()) {
+            return null;
+        }
+        BitSet union = new BitSet();
+        for (K value : selected) {
+            BitSet slotsOfValue = facet.get(value);
+            if (slotsOfValue != null) {
+                union.or(slotsOfValue);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * AND-s the live slots with every facet that filters.
+     *
+     * @param facets the facets to apply; null entries do not filter
+     * @return a new bit set of the matching slots
+     */
+    private BitSet intersect(BitSet... facets) {
+        BitSet result = (BitSet) live.clone();
+        for (BitSet facet : facets) {
+            if (facet != null) {
+                result.and(facet);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the slots set in both bit sets.
+     *
+     * @param a the first bit set
+     * @param b the second bit set
+     * @return the size of the intersection
+     */
+    private int countAnd(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    /**
+     * Returns the product ids of one page of matches, newest first.
+     *
+     * @param matches the matching slots
+     * @param page    the zero-based page number
+     * @param size    the page size
+     * @return the product ids of the page; empty for pages past the last match
+     */
+    private List<Long> page(BitSet matches, int page, int size) {
+        List<Long> ids = new ArrayList<>();
+        long skip = (long) page * size;
+        if (skip >= matches.cardinality()) {
+            return ids;
+        }
+        for (int slot = matches.previousSetBit(slotCount - 1); slot >= 0 && ids.size() < size;
+             slot = matches.previousSetBit(slot - 1)) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                ids.add(productIds[slot]);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * A page of matching product ids together with the total and facet counts.
+     *
+     * @param productIds the product ids of the requested page, newest first
+     * @param result     the total and facet counts; products are filled in by the caller
+     */
+    public record Selection(List<Long> productIds, ProductFilterResult result) {
+    }
+}
@@ -0,0 +1,589 @@
+package com.example.ex4.components;
+
+import com.example.ex4.dto.ProductDto;
+import com.example.ex4.dto.SearchMode;
+import com.example.ex4.repo.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory search index over product names used by the live search bar.
+ * <p>
+ * Names are indexed by their character trigrams, and every word by its one- and
+ * two-letter prefixes, so a query is answered by intersecting a few posting sets
+ * instead of scanning the product table. The index is built at startup and kept
+ * up to date by {@code ProductService} on every product add, edit, and delete.
+ * </p>
+ * <p>
+ * Typo-tolerant matching walks a trie of the distinct words of all names as a
+ * bounded edit-distance automaton, so only words within a small distance of each
+ * query word (insertions, deletions, substitutions, and swapped adjacent letters)
+ * are visited. A word may be off by one edit from four letters on and by two edits
+ * from eight letters on; shorter words must match a word prefix exactly.
+ * </p>
+ * <p>
+ * Results are ranked by: name starts with the query, then a word in the name starts
+ * with the query, then any other substring match, then fuzzy matches by their total
+ * edit distance; ties are broken by units sold, then by the shorter name.
+ * </p>
+ */
+@Component
+public class ProductSearchIndex {
+
+    /** Length of the n-grams used for queries of three or more characters. */
+    private static final int GRAM = 3;
+
+    /** Rank given to fuzzy matches before their edit distance is added. */
+    private static final int FUZZY_RANK = 3;
+
+    /** Repository used to load all product names at startup. */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Sales counters used to rank equally relevant matches by popularity. */
+    @Autowired
+    private SalesCounters salesCounters;
+
+    /** Ranking of matches: match position, then units sold, then shorter name. */
+    private static final Comparator<Match> MATCH_ORDER = Comparator
+            .comparingInt(Match::rank)
+            .thenComparing(Comparator.comparingLong(Match::unitsSold).reversed())
+            .thenComparingInt(match -> match.name().length())
+            .thenComparing(Match::name);
+
+    /** Indexed product names keyed by product id. */
+    private final Map<Long, String> names = new HashMap<>();
+
+    /** Normalized product names keyed by product id. */
+    private final Map<Long, String> normalizedNames = new HashMap<>();
+
+    /** Product ids keyed by trigram of the lower-case name. */
+    private final Map<String, Set<Long>> trigrams = new HashMap<>();
+
+    /** Product ids keyed by one- and two-letter word prefixes, for short queries. */
+    private final Map<String, Set<Long>> shortPrefixes = new HashMap<>();
+
+    /** Product ids keyed by every word of the lower-case name. */
+    private final Map<String, Set<Long>> wordPostings = new HashMap<>();
+
+    /** Trie over the indexed words, walked by the typo-tolerant search. */
+    private TrieNode wordTrie = new TrieNode();
+
+    /** Number of words removed from the trie since it was last built. */
+    private int removedWords;
+
+    /** Guards the maps and tree above; searches share the read lock. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes every product name before the application starts serving requests.
+     */
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> rows = productRepository.findAllIdsAndNames();
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            normalizedNames.clear();
+            trigrams.clear();
+            shortPrefixes.clear();
+            wordPostings.clear();
+            wordTrie = new TrieNode();
+            removedWords = 0;
+            for (Object[] row : rows) {
+                add((Long) row[0], (String) row[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a product to the index or replaces its indexed name.
+     *
+     * @param id   the product id
+     * @param name the product name
+     */
+    public void put(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(id);
+            add(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product from the index.
+     *
+     * @param id the product id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best matches for a query, ranked as described on the class.
+     * <p>
+     * In {@code AUTO} mode fuzzy matches are only looked up when there are fewer
+     * substring matches than {@code limit}.
+     * </p>
+     *
+     * @param query the text typed by the shopper
+     * @param limit the maximum number of results
+     * @param mode  which kinds of matches to return
+     * @return the matching products as id and name pairs
+     */
+    public List<ProductDto> search(String query, int limit, SearchMode mode) {
+        String term = normalize(query);
+        if (term.isEmpty()) {
+            return List.of();
+        }
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (mode != SearchMode.FUZZY) {
+                for (Long id : candidates(term)) {
+                    String normalized = normalizedNames.get(id);
+                    if (normalized != null && normalized.contains(term)) {
+                        matches.add(match(id, matchRank(normalized, term)));
+                    }
+                }
+            }
+            if (mode != SearchMode.EXACT && matches.size() < limit) {
+                addFuzzyMatches(term, matches);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        PriorityQueue<Match> best = new PriorityQueue<>(MATCH_ORDER.reversed());
+        for (Match match : matches) {
+            best.offer(match);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Match> top = new ArrayList<>(best);
+        top.sort(MATCH_ORDER);
+        List<ProductDto> results = new ArrayList<>();
+        for (Match match : top) {
+            results.add(new ProductDto(match.id(), match.name()));
+        }
+        return results;
+    }
+
+    //========================================
+    //            Private Methods
+    //========================================
+
+    /**
+     * Adds products whose name has a word close to every query word, skipping products
+     * already in {@code matches}. Must be called with the read lock held.
+     *
+     * @param term    the normalized query
+     * @param matches the matches found so far; fuzzy matches are appended
+     */
+    private void addFuzzyMatches(String term, List<Match> matches) {
+        Map<Long, Integer> distances = null;
+        for (String word : words(term)) {
+            Map<Long, Integer> wordDistances = new HashMap<>();
+            int maxEdits = maxEdits(word);
+            if (maxEdits == 0) {
+                for (Long id : candidates(word)) {
+                    String normalized = normalizedNames.get(id);
+                    if (normalized != null && matchRank(normalized, word) <= 1) {
+                        wordDistances.put(id, 0);
+                    }
+                }
+            } else {
+                searchWordTrie(word, maxEdits, (token, distance) -> {
+                    for (Long id : wordPostings.get(token)) {
+                        wordDistances.merge(id, distance, Math::min);
+                    }
+                });
+            }
+            if (distances == null) {
+                distances = wordDistances;
+            } else {
+                distances.keySet().retainAll(wordDistances.keySet());
+                distances.replaceAll((id, distance) -> distance + wordDistances.get(id));
+            }
+            if (distances.isEmpty()) {
+                return;
+            }
+        }
+        if (distances == null) {
+            return;
+        }
+        Set<Long> found = new HashSet<>();
+        for (Match match : matches) {
+            found.add(match.id());
+        }
+        distances.forEach((id, distance) -> {
+            if (!found.contains(id)) {
+                matches.add(match(id, FUZZY_RANK + distance));
+            }
+        });
+    }
+
+    /**
+     * Creates a match for an indexed product. Must be called with the read lock held.
+     *
+     * @param id   the product id
+     * @param rank the match rank, lower is better
+     * @return the match
+     */
+    private Match match(long id, int rank) {
+        return new Match(id, names.get(id), rank, salesCounters.getUnitsSold(id));
+    }
+
+    /**
+     * Returns how many edits a query word may be away from a name word.
+     *
+     * @param word the query word
+     * @return the maximum edit distance
+     */
+    private int maxEdits(String word) {
+        if (word.length() < 4) {
+            return 0;
+        }
+        return word.length() < 8 ? 1 : 2;
+    }
+
+    /**
+     * Visits every indexed word within {@code maxEdits} of the query word. Must be called
+     * with the read lock held.
+     * <p>
+     * Walks the word trie while computing one row of the edit distance matrix per trie
+     * level, and stops descending as soon as every cell of a row exceeds {@code maxEdits},
+     * so only the few branches that can still match are visited.
+     * </p>
+     *
+     * @param word     the query word
+     * @param maxEdits the maximum edit distance
+     * @param visitor  receives each matching word and its distance
+     */
+    private void searchWordTrie(String word, int maxEdits, BiConsumer<String, Integer> visitor) {
+        int[] firstRow = new int[word.length() + 1];
+        for (int j = 0; j < firstRow.length; j++) {
+            firstRow[j] = j;
+        }
+        for (int i = 0; i < wordTrie.keys.length; i++) {
+            walkWordTrie(wordTrie.children[i], wordTrie.keys[i], (char) 0, word, firstRow, null,
+                    maxEdits, visitor);
+        }
+    }
+
+    /**
+     * Computes the edit distance row of one trie node and descends into its children
+     * while a match is still possible.
+     *
+     * @param node        the trie node reached by {@code letter}
+     * @param letter      the letter of the edge leading to the node
+     * @param previous    the letter of the edge before it, or 0 at the first level
+     * @param word        the query word
+     * @param parentRow   the distance row of the parent node
+     * @param grandRow    the distance row of the grandparent node, or null at the first level
+     * @param maxEdits    the maximum edit distance
+     * @param visitor     receives each matching word and its distance
+     */
+    private void walkWordTrie(TrieNode node, char letter, char previous, String word, int[] parentRow,
+                              int[] grandRow, int maxEdits, BiConsumer<String, Integer> visitor) {
+        int[] row = new int[parentRow.length];
+        row[0] = parentRow[0] + 1;
+        int rowMin = row[0];
+        for (int j = 1; j < row.length; j++) {
+            int cost = word.charAt(j - 1) == letter ? 0 : 1;
+            row[j] = Math.min(Math.min(parentRow[j] + 1, row[j - 1] + 1), parentRow[j - 1] + cost);
+            if (grandRow != null && j > 1 && word.charAt(j - 1) == previous && word.charAt(j - 2) == letter) {
+                row[j] = Math.min(row[j], grandRow[j - 2] + 1);
+            }
+            rowMin = Math.min(rowMin, row[j]);
+        }
+        if (node.word != null && row[row.length - 1] <= maxEdits) {
+            visitor.accept(node.word, row[row.length - 1]);
+        }
+        if (rowMin <= maxEdits) {
+            for (int i = 0; i < node.keys.length; i++) {
+                walkWordTrie(node.children[i], node.keys[i], letter, word, row, parentRow, maxEdits, visitor);
+            }
+        }
+    }
+
+    /**
+     * Finds the trie node of a word. Must be called with the write lock held.
+     *
+     * @param word   the word
+     * @param create whether to create missing nodes
+     * @return the node, or null if it does not exist and {@code create} is false
+     */
+    private TrieNode wordNode(String word, boolean create) {
+        TrieNode node = wordTrie;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.child(word.charAt(i), create);
+        }
+        return node;
+    }
+
+    /**
+     * Rebuilds the word trie from the words in use once more words were removed from it
+     * than are left, so removed branches do not pile up. Must be called with the write lock held.
+     */
+    private void compactWordTrie() {
+        if (removedWords <= wordPostings.size()) {
+            return;
+        }
+        wordTrie = new TrieNode();
+        removedWords = 0;
+        for (String word : wordPostings.keySet()) {
+            wordNode(word, true).word = word;
+        }
+    }
+
+    /**
+     * Returns the ids of products that may contain the term; the caller verifies each one.
+     * Must be called with the read lock held.
+     *
+     * @param term the normalized query
+     * @return candidate product ids
+     */
+    private Collection<Long> candidates(String term) {
+        if (term.length() < GRAM) {
+            return shortPrefixes.getOrDefault(term, Set.of());
+        }
+        Set<Long> smallest = null;
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(term)) {
+            Set<Long> posting = trigrams.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            postings.add(posting);
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        List<Long> result = new ArrayList<>();
+        for (Long id : smallest) {
+            boolean inAll = true;
+            for (Set<Long> posting : postings) {
+                if (posting != smallest && !posting.contains(id)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ranks how well a name matches the term: 0 for a name prefix, 1 for a word prefix, 2 otherwise.
+     *
+     * @param name the normalized product name
+     * @param term the normalized query
+     * @return the rank, lower is better
+     */
+    private int matchRank(String name, String term) {
+        if (name.startsWith(term)) {
+            return 0;
+        }
+        int index = name.indexOf(term);
+        while (index > 0) {
+            if (!Character.isLetterOrDigit(name.charAt(index - 1))) {
+                return 1;
+            }
+            index = name.indexOf(term, index + 1);
+        }
+        return 2;
+    }
+
+    /**
+     * Indexes a product. Must be called with the write lock held.
+     *
+     * @param id   the product id
+     * @param name the product name
+     */
+    private void add(long id, String name) {
+        if (name == null) {
+            return;
+        }
+        String normalized = normalize(name);
+        names.put(id, name);
+        normalizedNames.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            trigrams.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+        }
+        for (String prefix : shortPrefixes(normalized)) {
+            shortPrefixes.computeIfAbsent(prefix, key -> new HashSet<>()).add(id);
+        }
+        for (String word : words(normalized)) {
+            wordPostings.computeIfAbsent(word, key -> {
+                wordNode(key, true).word = key;
+                return new HashSet<>();
+            }).add(id);
+        }
+    }
+
+    /**
+     * Removes a product from every posting set. Must be called with the write lock held.
+     *
+     * @param id the product id
+     */
+    private void removeEntry(long id) {
+        names.remove(id);
+        String normalized = normalizedNames.remove(id);
+        if (normalized == null) {
+            return;
+        }
+        for (String gram : grams(normalized)) {
+            removePosting(trigrams, gram, id);
+        }
+        for (String prefix : shortPrefixes(normalized)) {
+            removePosting(shortPrefixes, prefix, id);
+        }
+        for (String word : words(normalized)) {
+            if (removePosting(wordPostings, word, id)) {
+                wordNode(word, false).word = null;
+                removedWords++;
+            }
+        }
+        compactWordTrie();
+    }
+
+    /**
+     * Removes an id from a posting set, dropping the set once it is empty.
+     *
+     * @param index the index holding the posting set
+     * @param key   the posting key
+     * @param id    the product id
+     * @return true if the posting set was dropped
+     */
+    private boolean removePosting(Map<String, Set<Long>> index, String key, long id) {
+        Set<Long> posting = index.get(key);
+        if (posting != null) {
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                index.remove(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the distinct trigrams of a normalized string.
+     *
+     * @param text the normalized text
+     * @return its trigrams
+     */
+    private Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the one- and two-letter prefixes of every word of a normalized string.
+     *
+     * @param text the normalized text
+     * @return the word prefixes
+     */
+    private Set<String> shortPrefixes(String text) {
+        Set<String> result = new HashSet<>();
+        for (String word : words(text)) {
+            for (int length = 1; length < GRAM && length <= word.length(); length++) {
+                result.add(word.substring(0, length));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distinct words of a normalized string.
+     *
+     * @param text the normalized text
+     * @return its non-empty words
+     */
+    private Set<String> words(String text) {
+        Set<String> result = new HashSet<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lower-cases a string and collapses runs of whitespace.
+     *
+     * @param text the text to normalize; may be null
+     * @return the normalized text
+     */
+    private String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * A verified match with the values it is ranked by.
+     */
+    private record Match(long id, String name, int rank, long unitsSold) {
+    }
+
+    /**
+     * A word trie node. Children are kept in small parallel arrays since most nodes
+     * have only a few of them.
+     */
+    private static class TrieNode {
+
+        private char[] keys = new char[0];
+
+        private TrieNode[] children = new TrieNode[0];
+
+        /** The word ending at this node, or null if no indexed word ends here. */
+        private String word;
+
+        TrieNode child(char key, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = new TrieNode();
+            return children[children.length - 1];
+        }
+    }
+}
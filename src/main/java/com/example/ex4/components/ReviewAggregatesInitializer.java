@@ -0,0 +1,37 @@
+package com.example.ex4.components;
+
+import com.example.ex4.repo.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Component responsible for bringing the review aggregates stored on every product
+ * in line with the reviews table.
+ * <p>
+ * Upon application startup, it recomputes every product's review count, rating sum,
+ * and star histogram with a single bulk update. This fills the aggregates of databases
+ * created before they existed and corrects any drift; afterwards they are kept up to
+ * date by {@code ReviewService} for every new review.
+ * </p>
+ */
+@Component
+public class ReviewAggregatesInitializer {
+
+    /** Repository used to run the bulk recompute. */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Runs the bulk update in its own transaction. */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Recomputes the review aggregates after bean construction.
+     */
+    @PostConstruct
+    public void init() {
+        transactionTemplate.executeWithoutResult(status -> productRepository.recomputeReviewAggregates());
+    }
+}
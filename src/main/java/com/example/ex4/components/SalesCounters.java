@@ -0,0 +1,196 @@
+package com.example.ex4.components;
+
+import com.example.ex4.repo.Order;
+import com.example.ex4.repo.OrderItem;
+import com.example.ex4.repo.OrderItemRepository;
+import com.example.ex4.repo.OrderRepository;
+import com.example.ex4.repo.OutboxEvent;
+import com.example.ex4.repo.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running sales totals used by the admin dashboard and product ranking.
+ * <p>
+ * Totals are rebuilt from the orders table with aggregate queries at startup
+ * and then updated incrementally for every order delivered by the
+ * {@link OutboxDispatcher}, so reading them costs the same no matter how many
+ * orders exist. The orders table stays the persistent source of truth for every
+ * counter.
+ * </p>
+ */
+@Component
+public class SalesCounters implements OrderPlacedListener {
+
+    /** Repository used to rebuild order totals at startup. */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /** Repository used to rebuild per-product and per-category totals at startup. */
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    /** Repository used to find orders that are counted at startup but not delivered yet. */
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    /** Ids of orders counted by {@link #rebuild()} whose delivery is still pending; skipped once. */
+    private final Set<Long> countedAtStartup = ConcurrentHashMap.newKeySet();
+
+    /** Number of placed orders. */
+    private final LongAdder orderCount = new LongAdder();
+
+    /** Sum of the total payment of all orders. */
+    private final DoubleAdder revenue = new DoubleAdder();
+
+    /** Units sold keyed by product id. */
+    private final Map<Long, LongAdder> unitsByProduct = new ConcurrentHashMap<>();
+
+    /** Revenue keyed by category name. */
+    private final Map<String, DoubleAdder> revenueByCategory = new ConcurrentHashMap<>();
+
+    /** Revenue keyed by order day. */
+    private final Map<LocalDate, DoubleAdder> revenueByDay = new ConcurrentHashMap<>();
+
+    /**
+     * Rebuilds every counter from the orders table before the application starts serving requests.
+     * <p>
+     * Orders whose outbox events are still pending are already part of the rebuilt
+     * totals, so their delivery is skipped.
+     * </p>
+     */
+    @PostConstruct
+    public void rebuild() {
+        countedAtStartup.addAll(outboxEventRepository.findPendingAggregateIds(OutboxEvent.ORDER_PLACED));
+        orderCount.add(orderRepository.count());
+        revenue.add(orderRepository.sumTotalPayment());
+        for (Object[] row : orderRepository.sumTotalPaymentByDay()) {
+            revenueByDay.computeIfAbsent((LocalDate) row[0], day -> new DoubleAdder())
+                    .add(((Number) row[1]).doubleValue());
+        }
+        for (Object[] row : orderItemRepository.sumQuantityByProduct()) {
+            unitsByProduct.computeIfAbsent((Long) row[0], id -> new LongAdder())
+                    .add(((Number) row[1]).longValue());
+        }
+        for (Object[] row : orderItemRepository.sumRevenueByCategory()) {
+            revenueByCategory.computeIfAbsent((String) row[0], name -> new DoubleAdder())
+                    .add(((Number) row[1]).doubleValue());
+        }
+    }
+
+    /**
+     * Adds delivered orders to the running totals.
+     *
+     * @param orders the placed orders with their items
+     */
+    @Override
+    public void onOrdersPlaced(List<Order> orders) {
+        for (Order order : orders) {
+            if (!countedAtStartup.remove(order.getId())) {
+                recordOrder(order);
+            }
+        }
+    }
+
+    /**
+     * Adds a committed order to the running totals.
+     *
+     * @param order the order that was placed, with its items
+     */
+    public void recordOrder(Order order) {
+        orderCount.increment();
+        revenue.add(order.getTotalPayment());
+        revenueByDay.computeIfAbsent(order.getCreatedAt().toLocalDate(), day -> new DoubleAdder())
+                .add(order.getTotalPayment());
+        for (OrderItem item : order.getOrderItems()) {
+            unitsByProduct.computeIfAbsent(item.getProduct().getId(), id -> new LongAdder())
+                    .add(item.getQuantity());
+            if (item.getProduct().getCategory() != null) {
+                revenueByCategory.computeIfAbsent(item.getProduct().getCategory().getCategoryName(),
+                                name -> new DoubleAdder())
+                        .add(item.getRevenue());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of placed orders.
+     *
+     * @return the order count
+     */
+    public long getOrderCount() {
+        return orderCount.sum();
+    }
+
+    /**
+     * Returns the total revenue of all orders.
+     *
+     * @return the revenue
+     */
+    public double getRevenue() {
+        return revenue.sum();
+    }
+
+    /**
+     * Returns the number of units sold of a product.
+     *
+     * @param productId the product id
+     * @return the units sold, or 0 if the product was never ordered
+     */
+    public long getUnitsSold(long productId) {
+        LongAdder units = unitsByProduct.get(productId);
+        return units == null ? 0 : units.sum();
+    }
+
+    /**
+     * Returns the ids of the best-selling products, most units first.
+     *
+     * @param limit the maximum number of product ids to return
+     * @return product ids ordered by units sold
+     */
+    public List<Long> getTopProductIds(int limit) {
+        return unitsByProduct.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Returns the revenue of every category, ordered by category name.
+     *
+     * @return a map of category name to revenue
+     */
+    public Map<String, Double> getRevenueByCategory() {
+        Map<String, Double> result = new TreeMap<>();
+        revenueByCategory.forEach((name, sum) -> result.put(name, sum.sum()));
+        return result;
+    }
+
+    /**
+     * Returns the revenue of every day from {@code from} onwards, ordered by day.
+     *
+     * @param from the first day to include
+     * @return a map of day to revenue
+     */
+    public Map<LocalDate, Double> getRevenueByDay(LocalDate from) {
+        Map<LocalDate, Double> result = new TreeMap<>();
+        revenueByDay.forEach((day, sum) -> {
+            if (!day.isBefore(from)) {
+                result.put(day, sum.sum());
+            }
+        });
+        return result;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.ex4.configurations;
 
 import com.example.ex4.security.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -47,11 +48,14 @@ public class ApplicationConfiguration {
                 ))
                 // Define URL authorization rules
                 .authorizeHttpRequests(requests -> requests
+                        // Async results are dispatched after the original request was authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/css/**", "/", "/403", "/js/**", "/img/**",
                                 "/uploads/**", "/login", "/register",
                                 "/api/user-exists", "/form/register", "/public/**",
-                                "/api/delete/cart-item/**", "/api/products/search"
+                                "/api/delete/cart-item/**", "/api/products/search",
+                                "/api/products/filter", "/api/products/*/reviews"
                         ).permitAll()
                         .requestMatchers("/user/**").hasRole("USER")
                         .requestMatchers("/api/user/**").hasRole("USER")
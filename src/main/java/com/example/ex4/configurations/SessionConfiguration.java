@@ -1,17 +1,32 @@
 package com.example.ex4.configurations;
 
 import com.example.ex4.session.CartSession;
+import com.example.ex4.session.JdbcSessionStore;
+import com.example.ex4.session.OffHeapSessionStore;
+import com.example.ex4.session.SessionStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.context.annotation.SessionScope;
 
 /**
  * Configuration class for session-scoped beans.
  * <p>
  * Defines beans with HTTP session lifecycle, such as a shopping cart session.
+ * HTTP sessions are kept by the
+ * {@link com.example.ex4.session.StoredSessionRepository} in the store chosen
+ * by {@code session.store.type}: {@code memory} keeps them off-heap in this
+ * instance, {@code jdbc} keeps them in the database so any instance can serve
+ * any request without sticky routing. The inventory ledger and the asynchronous
+ * checkout pipeline keep their state in one instance's memory, so they must stay
+ * disabled when several instances share the sessions.
  * </p>
  */
 @Configuration
+@EnableSpringHttpSession
 public class SessionConfiguration {
 
     /**
@@ -27,4 +42,23 @@ public class SessionConfiguration {
     public CartSession cartSessionBean() {
         return new CartSession();
     }
+
+    /**
+     * Provides the store holding the HTTP sessions.
+     *
+     * @param type                the store type, {@code memory} or {@code jdbc}
+     * @param jdbcTemplate        runs the statements of the JDBC store
+     * @param transactionTemplate runs the writes of the JDBC store
+     * @return the configured session store
+     * @throws IllegalArgumentException if the store type is unknown
+     */
+    @Bean
+    public SessionStore sessionStore(@Value("${session.store.type:memory}") String type,
+                                     JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        return switch (type) {
+            case "memory" -> new OffHeapSessionStore();
+            case "jdbc" -> new JdbcSessionStore(jdbcTemplate, transactionTemplate);
+            default -> throw new IllegalArgumentException("Unknown session store type: " + type);
+        };
+    }
 }
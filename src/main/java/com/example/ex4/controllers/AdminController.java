@@ -1,5 +1,7 @@
 package com.example.ex4.controllers;
 
+import com.example.ex4.dto.ProductPage;
+import com.example.ex4.dto.ProductSort;
 import com.example.ex4.repo.Category;
 import com.example.ex4.repo.CartItem;
 import com.example.ex4.repo.OrderItem;
@@ -11,6 +13,8 @@ import com.example.ex4.services.ProductService;
 import com.example.ex4.session.CartSession;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -19,6 +23,8 @@ import org.springframework.web.bind.annotation.*;
 import java.io.IOException;
 import java.security.Principal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Controller responsible for administrative operations such as managing products,
@@ -44,16 +50,30 @@ public class AdminController {
     @Autowired
     private OrderService orderService;
 
+    /** Number of products shown per page in the product manager. */
+    @Value("${catalog.page-size:24}")
+    private int productsPageSize;
+
+    /** Number of order items shown per page on the orders dashboard. */
+    @Value("${admin.orders.page-size:50}")
+    private int ordersPageSize;
+
     /**
-     * Displays the product management page with all existing products.
+     * Displays one page of the product management table.
      *
-     * @param model the model to populate view attributes
+     * @param sort   sort order: price, price-desc, name, or newest
+     * @param cursor cursor of the page to display; empty for the first page
+     * @param model  the model to populate view attributes
      * @return the view name for product management
      */
     @GetMapping("/products-manager")
-    public String sellerPage(Model model) {
-        List<Product> products = productService.getAllProducts();
-        model.addAttribute("products", products);
+    public String sellerPage(@RequestParam(required = false) String sort,
+                             @RequestParam(required = false) String cursor,
+                             Model model) {
+        ProductPage page = productService.getProductsPage(null,
+                ProductSort.fromValue(sort, ProductSort.NEWEST), cursor, productsPageSize);
+        model.addAttribute("products", page.getProducts());
+        model.addAttribute("page", page);
         model.addAttribute("url", "/admin/add-product-page");
         return "product-manager";
     }
@@ -95,22 +115,26 @@ public class AdminController {
      * @param product the product entity to validate and save
      * @param result  binding result for validation errors
      * @param model   the model to repopulate attributes on error
-     * @return redirect to product management on success or the add-edit view on error
-     * @throws IOException if file upload fails
+     * @return redirect to product management once the product is saved, or the add-edit view on error
      */
     @PostMapping("/add-product-page")
-    public String addProduct(
+    public CompletableFuture<String> addProduct(
             @Valid @ModelAttribute Product product,
             BindingResult result,
             Model model
-    ) throws IOException {
+    ) {
         if (result.hasErrors()) {
             List<Category> categories = categoryService.getAllCategories();
             model.addAttribute("categories", categories);
-            return "add-edit-product";
+            return CompletableFuture.completedFuture("add-edit-product");
         }
-        productService.addProduct(product, product.getFile());
-        return "redirect:/admin/products-manager";
+        CompletableFuture<Void> saving;
+        try {
+            saving = productService.addProduct(product, product.getFile());
+        } catch (IOException e) {
+            saving = CompletableFuture.failedFuture(e);
+        }
+        return afterSave(saving, model);
     }
 
     /**
@@ -118,16 +142,47 @@ public class AdminController {
      *
      * @param id      the ID of the product to update
      * @param product the product entity with updated fields
-     * @return redirect to product management on success
-     * @throws IOException if file upload fails
+     * @param model   the model to repopulate attributes on error
+     * @return redirect to product management once the product is saved, or the add-edit view on error
      */
     @PostMapping("/add-product-page/edit/{id}")
-    public String editProduct(
+    public CompletableFuture<String> editProduct(
             @PathVariable("id") long id,
-            @ModelAttribute Product product
-    ) throws IOException {
-        productService.editProduct(product, id);
-        return "redirect:/admin/products-manager";
+            @ModelAttribute Product product,
+            Model model
+    ) {
+        model.addAttribute("url", "/admin/add-product-page/edit/" + id);
+        CompletableFuture<Void> saving;
+        try {
+            saving = productService.editProduct(product, id);
+        } catch (IOException e) {
+            saving = CompletableFuture.failedFuture(e);
+        }
+        return afterSave(saving, model);
+    }
+
+    /**
+     * Redirects to product management once a product is saved, or shows the add-edit
+     * view again with the reason if its image could not be stored. Other failures are
+     * passed on to the error page.
+     *
+     * @param saving the future of the save
+     * @param model  the model to repopulate attributes on error
+     * @return the view to render once the save completed
+     */
+    private CompletableFuture<String> afterSave(CompletableFuture<Void> saving, Model model) {
+        return saving.handle((saved, error) -> {
+            if (error == null) {
+                return "redirect:/admin/products-manager";
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (!(cause instanceof IOException)) {
+                throw new CompletionException(cause);
+            }
+            model.addAttribute("categories", categoryService.getAllCategories());
+            model.addAttribute("imageError", cause.getMessage());
+            return "add-edit-product";
+        });
     }
 
     /**
@@ -144,18 +199,26 @@ public class AdminController {
     }
 
     /**
-     * Displays the orders overview page with total orders, revenue, and order items.
+     * Displays the orders overview page with total orders, revenue, and one page of order items.
+     * <p>
+     * Totals come from the running sales counters and the order items are paginated,
+     * so the page cost does not grow with the size of the orders table.
+     * </p>
      *
+     * @param page  the zero-based page of order items to display
      * @param model the model to populate view attributes
      * @return the view name for the admin orders page
      */
     @GetMapping("/orders")
-    public String getOrdersPage(Model model) {
-        List<OrderItem> orderItems = orderItemService.getAllOrderItems();
-        model.addAttribute("totalOrders", orderItems.size());
+    public String getOrdersPage(@RequestParam(defaultValue = "0") int page, Model model) {
+        Page<OrderItem> orderItems = orderItemService.getOrderItemsPage(Math.max(page, 0), ordersPageSize);
+        model.addAttribute("totalOrders", orderItems.getTotalElements());
         model.addAttribute("totalRevenue", orderService.getTotalRevenue());
         model.addAttribute("orders", orderService.getTotalOrdersAmount());
-        model.addAttribute("orderItems", orderItems);
+        model.addAttribute("orderItems", orderItems.getContent());
+        model.addAttribute("page", orderItems);
+        model.addAttribute("topProducts", orderService.getTopSellingProducts(5));
+        model.addAttribute("categoryRevenue", orderService.getRevenueByCategory());
         return "admin-orders-page";
     }
 }
@@ -0,0 +1,169 @@
+package com.example.ex4.controllers;
+
+import com.example.ex4.services.StorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Controller serving the uploaded product images under {@code /uploads/}.
+ * <p>
+ * Answers conditional requests ({@code If-None-Match}, {@code If-Modified-Since})
+ * with 304 and single byte ranges with 206. Content-addressed images never change,
+ * so they are sent with a one-year {@code immutable} Cache-Control and browsers do
+ * not ask for them again; images stored under their original name are revalidated
+ * after an hour.
+ * </p>
+ * <p>
+ * The file itself is handed to Tomcat's sendfile support, so the kernel copies it
+ * to the socket after the handler returned and the request thread is free at once.
+ * Connectors without sendfile get the file through {@link FileChannel#transferTo}.
+ * </p>
+ */
+@Controller
+public class ImageController {
+
+    /** URL prefix of the images. */
+    private static final String PREFIX = "/uploads/";
+
+    /** Cache-Control of content-addressed images. */
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /** Cache-Control of images stored under their original name. */
+    private static final String CACHE_REVALIDATE = "public, max-age=3600";
+
+    /** Request attributes through which Tomcat takes over the sending of a file. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Service resolving the stored images.
+     */
+    @Autowired
+    private StorageService storageService;
+
+    /**
+     * Sends an image, the requested part of it, or 304 if the client's copy is current.
+     *
+     * @param request  the current request
+     * @param response the response to write
+     * @throws IOException if the image cannot be read or sent
+     */
+    @GetMapping(PREFIX + "**")
+    public void getImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String fileName = UriUtils.decode(
+                request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length()),
+                StandardCharsets.UTF_8);
+        Path file;
+        try {
+            file = storageService.getImage(fileName);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        boolean immutable = storageService.isContentAddressed(fileName);
+        String etag = immutable
+                ? "\"" + fileName.substring(fileName.lastIndexOf('/') + 1).replaceFirst("\\.[^.]*$", "") + "\""
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length;
+        HttpRange range;
+        try {
+            range = requestedRange(request, etag, lastModified);
+            if (range != null) {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length) + 1;
+            }
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+
+        if ("HEAD".equals(request.getMethod()) || end == start) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            for (long position = start; position < end; ) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    /**
+     * Returns the single byte range the client asked for, if it should be honoured.
+     * Requests for several ranges, and ranges whose {@code If-Range} no longer matches
+     * the image, get the whole image.
+     *
+     * @param request      the current request
+     * @param etag         the entity tag of the image
+     * @param lastModified the modification time of the image in milliseconds
+     * @return the range, or null to send the whole image
+     * @throws IllegalArgumentException if the Range header is malformed or cannot be satisfied
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                return null;
+            }
+            try {
+                if (request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        List<HttpRange> ranges = HttpRange.parseRanges(header);
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+}
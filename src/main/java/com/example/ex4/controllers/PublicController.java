@@ -1,12 +1,17 @@
 package com.example.ex4.controllers;
 
 import com.example.ex4.components.NavbarConfig;
+import com.example.ex4.dto.ProductPage;
+import com.example.ex4.dto.ProductSort;
+import com.example.ex4.dto.ReviewPage;
+import com.example.ex4.dto.ReviewSort;
 import com.example.ex4.repo.CartItem;
 import com.example.ex4.repo.Product;
 import com.example.ex4.services.*;
 import com.example.ex4.session.CartSession;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -30,55 +35,85 @@ public class PublicController {
     @Autowired
     NavbarConfig navbarConfig;
 
+    /** Service layer for retrieving product reviews. */
+    @Autowired
+    ReviewService reviewService;
+
+    /** Number of products shown per category page. */
+    @Value("${catalog.page-size:24}")
+    private int pageSize;
+
     /** Session bean that holds the cart items for the current user session. */
     @Resource(name = "cartSessionBean")
     private CartSession cartSession;
 
     /**
      * Adds a product to the user's cart and redirects back to its category page.
+     * <p>
+     * If the requested units cannot be reserved, redirects back to the product page instead.
+     * </p>
      *
      * @param cartItem   item and quantity to add
      * @param productId  ID of the product to add
-     * @return redirect URL to the category page of the product
+     * @return redirect URL to the category page of the product, or to the product page if unavailable
      */
     @PostMapping("/add-to-cart/{productId}")
     public String addToCart(@ModelAttribute CartItem cartItem, @PathVariable long productId) {
-        cartSession.add(cartItem, productId);
+        if (!cartSession.add(cartItem, productId)) {
+            return "redirect:/public/product/" + productId + "?unavailable";
+        }
         Product product = productService.getProductById(productId);
         return "redirect:/public/categories/" + product.getCategory().getCategoryName();
     }
 
     /**
-     * Displays all products under a specified category.
+     * Displays one page of the products under a specified category.
      *
      * @param categoryName name of the category to display
+     * @param sort         sort order: price, price-desc, name, or newest
+     * @param cursor       cursor of the page to display; empty for the first page
      * @param model        model to hold attributes for rendering
      * @param principal    currently authenticated user (if any)
      * @return view name of the products page
      */
     @GetMapping("/categories/{categoryName}")
-    public String getCategoryPage(@PathVariable String categoryName, Model model, Principal principal) {
+    public String getCategoryPage(@PathVariable String categoryName,
+                                  @RequestParam(required = false) String sort,
+                                  @RequestParam(required = false) String cursor,
+                                  Model model, Principal principal) {
         navbarConfig.setNavbar(model, principal);
-        List<Product> products = productService.getProductsByCategory(categoryName);
-        model.addAttribute("products", products);
+        ProductPage page = productService.getProductsPage(categoryName,
+                ProductSort.fromValue(sort, ProductSort.NEWEST), cursor, pageSize);
+        model.addAttribute("products", page.getProducts());
+        model.addAttribute("page", page);
+        model.addAttribute("categoryName", categoryName);
         return "products-page";
     }
 
     /**
      * Shows detailed information for a single product.
      *
-     * @param productId ID of the product to display
-     * @param model     model to hold product data
-     * @param principal currently authenticated user (if any)
+     * Only the first page of reviews is rendered; further pages are loaded
+     * through the reviews API by the "load more" button.
+     *
+     * @param productId  ID of the product to display
+     * @param reviewSort sort order of the reviews ("newest", "highest", or "lowest")
+     * @param model      model to hold product data
+     * @param principal  currently authenticated user (if any)
      * @return view name of the product detail page
      */
     @GetMapping("/product/{productId}")
-    String getProductPage(@PathVariable long productId, Model model, Principal principal) {
+    String getProductPage(@PathVariable long productId,
+                          @RequestParam(required = false) String reviewSort,
+                          Model model, Principal principal) {
         navbarConfig.setNavbar(model, principal);
         Product product = productService.getProductById(productId);
+        ReviewPage reviewPage = reviewService.getReviewsPage(productId,
+                ReviewSort.fromValue(reviewSort, ReviewSort.NEWEST), null, reviewService.getReviewsPageSize());
         model.addAttribute("product", product);
-        model.addAttribute("average", product.getReviewsAverage());
-        model.addAttribute("reviews", product.getReviews());
+        model.addAttribute("average", product.getStarRating());
+        model.addAttribute("reviews", reviewPage.getReviews());
+        model.addAttribute("reviewPage", reviewPage);
         return "product-page";
     }
 
@@ -1,7 +1,18 @@
 package com.example.ex4.controllers;
 
+import com.example.ex4.components.LowStockAlerts;
+import com.example.ex4.components.NavbarConfig;
 import com.example.ex4.dto.IdRequest;
+import com.example.ex4.dto.LowStockAlert;
+import com.example.ex4.dto.OrderStatus;
 import com.example.ex4.dto.ProductDto;
+import com.example.ex4.dto.ProductFilter;
+import com.example.ex4.dto.ProductFilterResult;
+import com.example.ex4.dto.ProductPage;
+import com.example.ex4.dto.ProductSort;
+import com.example.ex4.dto.ReviewPage;
+import com.example.ex4.dto.ReviewSort;
+import com.example.ex4.dto.SearchMode;
 import com.example.ex4.repo.Category;
 import com.example.ex4.repo.Product;
 import com.example.ex4.repo.UserAccount;
@@ -20,10 +31,11 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API controller for managing users, products, categories, and cart items.
@@ -53,6 +65,36 @@ public class RestApi {
     @Autowired
     private UserAccountService userAccountService;
 
+    /**
+     * Service for order-related operations and sales statistics.
+     */
+    @Autowired
+    private OrderService orderService;
+
+    /**
+     * Service for paginated product reviews.
+     */
+    @Autowired
+    private ReviewService reviewService;
+
+    /**
+     * Checkout service, queried for the status of queued orders.
+     */
+    @Autowired
+    private CheckoutService checkoutService;
+
+    /**
+     * Navbar data provider, queried for its cache statistics.
+     */
+    @Autowired
+    private NavbarConfig navbarConfig;
+
+    /**
+     * Low-stock alerts raised from placed orders.
+     */
+    @Autowired
+    private LowStockAlerts lowStockAlerts;
+
     /**
      * Session bean for managing the shopping cart.
      */
@@ -74,24 +116,77 @@ public class RestApi {
      * Adds a new product via the admin endpoint.
      *
      * @param product the product to add
-     * @return HTTP 200 OK if the product is successfully added
+     * @return HTTP 200 OK once the product is successfully added
      * @throws IOException if file handling fails
      */
     @PostMapping("/admin/add-product")
-    public ResponseEntity<?> addProductAdmin(@ModelAttribute Product product) throws IOException {
-        productService.addProduct(product, product.getFile());
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<?>> addProductAdmin(@ModelAttribute Product product) throws IOException {
+        return productService.addProduct(product, product.getFile())
+                .thenApply(saved -> ResponseEntity.ok().build());
     }
 
     /**
-     * Retrieves all products.
+     * Retrieves one keyset-paginated page of products.
      *
-     * @return ResponseEntity containing the list of all products
+     * @param sort   sort order: price, price-desc, name, or newest
+     * @param cursor cursor returned with the previous page; empty for the first page
+     * @param size   the number of products per page, capped at 100
+     * @return ResponseEntity containing the products and the cursor of the next page
      */
     @GetMapping("/admin/get-products")
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<ProductPage> getAllProducts(@RequestParam(required = false) String sort,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "24") int size) {
+        ProductPage page = productService.getProductsPage(null,
+                ProductSort.fromValue(sort, ProductSort.NEWEST), cursor, Math.min(Math.max(size, 1), 100));
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Returns the hit, miss, and eviction counters of the product catalog cache.
+     *
+     * @return ResponseEntity containing the cache statistics
+     */
+    @GetMapping("/admin/catalog-cache/stats")
+    public ResponseEntity<Map<String, Long>> getCatalogCacheStats() {
+        return ResponseEntity.ok(productService.getCatalogCacheStats());
+    }
+
+    /**
+     * Returns the hit and miss counters of the navbar data cache.
+     *
+     * @return ResponseEntity containing the navbar cache statistics
+     */
+    @GetMapping("/admin/navbar-cache/stats")
+    public ResponseEntity<Map<String, Long>> getNavbarCacheStats() {
+        return ResponseEntity.ok(navbarConfig.getCacheStats());
+    }
+
+    /**
+     * Returns the running sales totals: order count, revenue, best sellers,
+     * revenue per category, and revenue per day for the last 30 days.
+     *
+     * @return ResponseEntity containing the sales statistics
+     */
+    @GetMapping("/admin/sales-stats")
+    public ResponseEntity<Map<String, Object>> getSalesStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("orders", orderService.getTotalOrdersAmount());
+        stats.put("revenue", orderService.getTotalRevenue());
+        stats.put("topProducts", orderService.getTopSellingProducts(10));
+        stats.put("revenueByCategory", orderService.getRevenueByCategory());
+        stats.put("revenueByDay", orderService.getRevenueByDay(30));
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Returns the products whose stock dropped to the low-stock threshold or below.
+     *
+     * @return ResponseEntity containing the open alerts, lowest stock first
+     */
+    @GetMapping("/admin/low-stock")
+    public ResponseEntity<List<LowStockAlert>> getLowStockAlerts() {
+        return ResponseEntity.ok(lowStockAlerts.getAlerts());
     }
 
     /**
@@ -155,18 +250,71 @@ public class RestApi {
      * Searches for products matching the given query string.
      *
      * @param query search term for product lookup
+     * @param mode  "exact", "fuzzy", or "auto" (substring matches, topped up with fuzzy matches)
      * @return ResponseEntity containing a list of ProductDto matching the query
      */
     @GetMapping("/products/search")
-    public ResponseEntity<?> search(@RequestParam String query) {
-        List<Product> products = productService.getAllSearchItems(query);
-        List<ProductDto> productsDto = new ArrayList<>();
-        for (Product product : products) {
-            productsDto.add(new ProductDto(product.getId(), product.getProductName()));
-        }
+    public ResponseEntity<?> search(@RequestParam String query,
+                                    @RequestParam(required = false) String mode) {
+        List<ProductDto> productsDto = productService.getAllSearchItems(query,
+                SearchMode.fromValue(mode, SearchMode.AUTO));
         return ResponseEntity.ok(productsDto);
     }
 
+    /**
+     * Returns one page of a product's reviews for the "load more" button of the product page.
+     *
+     * @param id     ID of the reviewed product
+     * @param sort   sort order ("newest", "highest", or "lowest")
+     * @param cursor cursor returned with the previous page; omitted for the first page
+     * @param size   maximum number of reviews on the page (1-50)
+     * @return ResponseEntity containing the ReviewPage
+     */
+    @GetMapping("/products/{id}/reviews")
+    public ResponseEntity<?> getReviews(@PathVariable long id,
+                                        @RequestParam(required = false) String sort,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "10") int size) {
+        ReviewPage page = reviewService.getReviewsPage(id, ReviewSort.fromValue(sort, ReviewSort.NEWEST),
+                cursor, Math.min(Math.max(size, 1), 50));
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Returns the status of an order submitted to the asynchronous checkout pipeline.
+     *
+     * @param key       the idempotency key of the payment form
+     * @param principal the authenticated user; only the user who placed the order sees it
+     * @return ResponseEntity containing the OrderStatus, or 404 if unknown
+     */
+    @GetMapping("/user/orders/{key}/status")
+    public ResponseEntity<?> getOrderStatus(@PathVariable String key, Principal principal) {
+        OrderStatus status = checkoutService.getStatus(key, principal);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Filters products by facets and returns the matching page with facet counts.
+     * <p>
+     * Values within one facet are OR-ed (e.g. {@code category=Home&category=Garden}),
+     * different facets are AND-ed. Price ranges use the bucket labels returned in
+     * {@code priceCounts}, e.g. {@code price=25-50}.
+     * </p>
+     *
+     * @param filter the bound query parameters: category, price, inStock, minRating, page, size
+     * @return ResponseEntity containing the ProductFilterResult
+     */
+    @GetMapping("/products/filter")
+    public ResponseEntity<?> filterProducts(@ModelAttribute ProductFilter filter) {
+        filter.setPage(Math.max(filter.getPage(), 0));
+        filter.setSize(filter.getSize() <= 0 ? 24 : Math.min(filter.getSize(), 100));
+        ProductFilterResult result = productService.filterProducts(filter);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Handles validation exceptions for method argument and constraint violations.
      *
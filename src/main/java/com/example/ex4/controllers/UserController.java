@@ -1,8 +1,11 @@
 package com.example.ex4.controllers;
 
 import com.example.ex4.components.NavbarConfig;
+import com.example.ex4.dto.OrderStatus;
+import com.example.ex4.exceptions.InsufficientStockException;
 import com.example.ex4.repo.Order;
 import com.example.ex4.repo.Review;
+import com.example.ex4.services.CheckoutService;
 import com.example.ex4.services.OrderService;
 import com.example.ex4.services.ProductService;
 import com.example.ex4.services.ReviewService;
@@ -10,13 +13,16 @@ import com.example.ex4.session.CartSession;
 import jakarta.annotation.Resource;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * MVC controller handling user-specific operations such as payment,
@@ -32,6 +38,12 @@ public class UserController {
     @Autowired
     OrderService orderService;
 
+    /**
+     * Service that places each submitted payment form at most once.
+     */
+    @Autowired
+    private CheckoutService checkoutService;
+
     /**
      * Configuration component for setting up the navigation bar.
      */
@@ -52,6 +64,10 @@ public class UserController {
 
     /**
      * Displays the payment page with current cart total.
+     * <p>
+     * Every rendering gets a fresh idempotency key, so submitting the form twice
+     * places one order.
+     * </p>
      *
      * @param model     Spring MVC model
      * @param principal authenticated user principal
@@ -60,7 +76,9 @@ public class UserController {
     @GetMapping("/payment-page")
     public String getPaymentPage(Model model, Principal principal) {
         navbarConfig.setNavbar(model, principal);
-        model.addAttribute("order", new Order());
+        Order order = new Order();
+        order.setIdempotencyKey(UUID.randomUUID().toString());
+        model.addAttribute("order", order);
         model.addAttribute("total", cartSession.getTotalCartPrice());
         return "payment-page";
     }
@@ -82,12 +100,19 @@ public class UserController {
 
     /**
      * Processes the payment form submission and creates a new order.
+     * <p>
+     * If any cart line has run out of stock in the meantime, the payment page is
+     * shown again listing the lines that could not be fulfilled. A repeated submit
+     * of the same form shows the result of the first submit without placing
+     * another order. With asynchronous checkout enabled the order is queued and
+     * the user is redirected to its status page.
+     * </p>
      *
      * @param order     the order data from the form
      * @param result    binding result for validation errors
      * @param principal authenticated user principal
      * @param model     Spring MVC model
-     * @return payment success view if valid, otherwise the payment page view
+     * @return payment success view or order status redirect if valid, otherwise the payment page view
      */
     @PostMapping("/pay")
     public String postPaymentPage(@Valid @ModelAttribute Order order,
@@ -99,10 +124,42 @@ public class UserController {
             model.addAttribute("total", cartSession.getTotalCartPrice());
             return "payment-page";
         }
-        orderService.addOrder(order, principal);
+        try {
+            if (checkoutService.isAsync()) {
+                return "redirect:/user/order-status/" + checkoutService.submit(order, principal);
+            }
+            checkoutService.checkout(order, principal);
+        } catch (InsufficientStockException e) {
+            navbarConfig.setNavbar(model, principal);
+            model.addAttribute("total", cartSession.getTotalCartPrice());
+            model.addAttribute("stockErrors", e.getFailedLines());
+            return "payment-page";
+        }
         return "payment-success";
     }
 
+    /**
+     * Displays the status of an order submitted to the asynchronous checkout pipeline.
+     * The page polls until the order is placed or failed.
+     *
+     * @param key       the idempotency key of the payment form
+     * @param model     Spring MVC model
+     * @param principal authenticated user principal
+     * @return name of the order-status view
+     * @throws ResponseStatusException with status NOT_FOUND if the order is unknown
+     */
+    @GetMapping("/order-status/{key}")
+    public String getOrderStatusPage(@PathVariable String key, Model model, Principal principal) {
+        OrderStatus status = checkoutService.getStatus(key, principal);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found");
+        }
+        navbarConfig.setNavbar(model, principal);
+        model.addAttribute("key", key);
+        model.addAttribute("status", status);
+        return "order-status";
+    }
+
     /**
      * Displays the add-review page for a specific order item.
      *
@@ -0,0 +1,55 @@
+package com.example.ex4.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+public class LowStockAlert implements Serializable {
+
+    private long productId;
+    private String productName;
+    private int inventory;
+    private LocalDateTime detectedAt;
+
+    public LowStockAlert() {
+
+    }
+
+    public LowStockAlert(long productId, String productName, int inventory, LocalDateTime detectedAt) {
+        this.productId = productId;
+        this.productName = productName;
+        this.inventory = inventory;
+        this.detectedAt = detectedAt;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(long productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public int getInventory() {
+        return inventory;
+    }
+
+    public void setInventory(int inventory) {
+        this.inventory = inventory;
+    }
+
+    public LocalDateTime getDetectedAt() {
+        return detectedAt;
+    }
+
+    public void setDetectedAt(LocalDateTime detectedAt) {
+        this.detectedAt = detectedAt;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.ex4.dto;
+
+import com.example.ex4.repo.Order;
+
+import java.util.Map;
+
+public class OrderCommand {
+
+    private Order order;
+    private Map<Long, Integer> quantities;
+    private Map<Long, String> names;
+    private String reservationId;
+    private String email;
+
+    public OrderCommand() {
+
+    }
+
+    public OrderCommand(Order order, Map<Long, Integer> quantities, Map<Long, String> names,
+                        String reservationId, String email) {
+        this.order = order;
+        this.quantities = quantities;
+        this.names = names;
+        this.reservationId = reservationId;
+        this.email = email;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public Map<Long, Integer> getQuantities() {
+        return quantities;
+    }
+
+    public void setQuantities(Map<Long, Integer> quantities) {
+        this.quantities = quantities;
+    }
+
+    public Map<Long, String> getNames() {
+        return names;
+    }
+
+    public void setNames(Map<Long, String> names) {
+        this.names = names;
+    }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.ex4.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class OrderStatus implements Serializable {
+
+    public static final String QUEUED = "queued";
+    public static final String PLACED = "placed";
+    public static final String FAILED = "failed";
+
+    private String state;
+    private Long orderId;
+    private List<String> messages;
+
+    public OrderStatus() {
+
+    }
+
+    public OrderStatus(String state, Long orderId, List<String> messages) {
+        this.state = state;
+        this.orderId = orderId;
+        this.messages = messages;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<String> messages) {
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.ex4.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductFilter {
+
+    private List<String> category = new ArrayList<>();
+    private List<String> price = new ArrayList<>();
+    private boolean inStock;
+    private int minRating;
+    private int page;
+    private int size;
+
+    public ProductFilter() {
+
+    }
+
+    public List<String> getCategory() {
+        return category;
+    }
+
+    public void setCategory(List<String> category) {
+        this.category = category;
+    }
+
+    public List<String> getPrice() {
+        return price;
+    }
+
+    public void setPrice(List<String> price) {
+        this.price = price;
+    }
+
+    public boolean isInStock() {
+        return inStock;
+    }
+
+    public void setInStock(boolean inStock) {
+        this.inStock = inStock;
+    }
+
+    public int getMinRating() {
+        return minRating;
+    }
+
+    public void setMinRating(int minRating) {
+        this.minRating = minRating;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ex4.dto;
+
+import com.example.ex4.repo.Product;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+public class ProductFilterResult implements Serializable {
+
+    private List<Product> products;
+    private int total;
+    private Map<String, Integer> categoryCounts;
+    private Map<String, Integer> priceCounts;
+    private int inStockCount;
+    private Map<Integer, Integer> ratingCounts;
+
+    public ProductFilterResult() {
+
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public void setCategoryCounts(Map<String, Integer> categoryCounts) {
+        this.categoryCounts = categoryCounts;
+    }
+
+    public Map<String, Integer> getPriceCounts() {
+        return priceCounts;
+    }
+
+    public void setPriceCounts(Map<String, Integer> priceCounts) {
+        this.priceCounts = priceCounts;
+    }
+
+    public int getInStockCount() {
+        return inStockCount;
+    }
+
+    public void setInStockCount(int inStockCount) {
+        this.inStockCount = inStockCount;
+    }
+
+    public Map<Integer, Integer> getRatingCounts() {
+        return ratingCounts;
+    }
+
+    public void setRatingCounts(Map<Integer, Integer> ratingCounts) {
+        this.ratingCounts = ratingCounts;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.ex4.dto;
+
+import com.example.ex4.repo.Product;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ProductPage implements Serializable {
+
+    private List<Product> products;
+    private String nextCursor;
+    private String sort;
+
+    public ProductPage() {
+
+    }
+
+    public ProductPage(List<Product> products, String nextCursor, String sort) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+        this.sort = sort;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.ex4.dto;
+
+import java.io.Serializable;
+
+public class ProductSalesDto implements Serializable {
+
+    private long productId;
+    private String productName;
+    private long unitsSold;
+
+    public ProductSalesDto() {
+
+    }
+
+    public ProductSalesDto(long productId, String productName, long unitsSold) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitsSold = unitsSold;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(long productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public void setUnitsSold(long unitsSold) {
+        this.unitsSold = unitsSold;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ex4.dto;
+
+import org.springframework.data.domain.Sort;
+
+/**
+ * Sort orders supported by the paginated product listings.
+ * <p>
+ * Every order ends with the product id so the keyset is unique
+ * and pages never skip or repeat products.
+ * </p>
+ */
+public enum ProductSort {
+
+    PRICE("price", Sort.by("price").ascending().and(Sort.by("id").ascending())),
+    PRICE_DESC("price-desc", Sort.by("price").descending().and(Sort.by("id").descending())),
+    NAME("name", Sort.by("productName").ascending().and(Sort.by("id").ascending())),
+    NEWEST("newest", Sort.by("id").descending());
+
+    private final String value;
+    private final Sort sort;
+
+    ProductSort(String value, Sort sort) {
+        this.value = value;
+        this.sort = sort;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Resolves a request parameter value to a sort order.
+     *
+     * @param value the parameter value, e.g. "price" or "newest"; may be null
+     * @param defaultSort the sort order to use when the value is missing or unknown
+     * @return the matching sort order
+     */
+    public static ProductSort fromValue(String value, ProductSort defaultSort) {
+        for (ProductSort productSort : values()) {
+            if (productSort.value.equalsIgnoreCase(value)) {
+                return productSort;
+            }
+        }
+        return defaultSort;
+    }
+}
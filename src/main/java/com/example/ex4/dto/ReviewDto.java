@@ -0,0 +1,75 @@
+package com.example.ex4.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+public class ReviewDto implements Serializable {
+
+    private long id;
+    private String username;
+    private LocalDateTime createdAt;
+    private int rating;
+    private String commentTitle;
+    private String comment;
+
+    public ReviewDto() {
+
+    }
+
+    public ReviewDto(long id, String username, LocalDateTime createdAt, int rating, String commentTitle, String comment) {
+        this.id = id;
+        this.username = username;
+        this.createdAt = createdAt;
+        this.rating = rating;
+        this.commentTitle = commentTitle;
+        this.comment = comment;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
+    public String getCommentTitle() {
+        return commentTitle;
+    }
+
+    public void setCommentTitle(String commentTitle) {
+        this.commentTitle = commentTitle;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+}
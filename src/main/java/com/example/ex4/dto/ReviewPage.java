@@ -0,0 +1,45 @@
+package com.example.ex4.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ReviewPage implements Serializable {
+
+    private List<ReviewDto> reviews;
+    private String nextCursor;
+    private String sort;
+
+    public ReviewPage() {
+
+    }
+
+    public ReviewPage(List<ReviewDto> reviews, String nextCursor, String sort) {
+        this.reviews = reviews;
+        this.nextCursor = nextCursor;
+        this.sort = sort;
+    }
+
+    public List<ReviewDto> getReviews() {
+        return reviews;
+    }
+
+    public void setReviews(List<ReviewDto> reviews) {
+        this.reviews = reviews;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+}
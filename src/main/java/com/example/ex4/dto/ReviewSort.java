@@ -0,0 +1,49 @@
+package com.example.ex4.dto;
+
+import org.springframework.data.domain.Sort;
+
+/**
+ * Sort orders supported by the paginated product reviews.
+ * <p>
+ * Every order ends with the review id so the keyset is unique
+ * and pages never skip or repeat reviews.
+ * </p>
+ */
+public enum ReviewSort {
+
+    NEWEST("newest", Sort.by("createdAt").descending().and(Sort.by("id").descending())),
+    HIGHEST("highest", Sort.by("rating").descending().and(Sort.by("id").descending())),
+    LOWEST("lowest", Sort.by("rating").ascending().and(Sort.by("id").ascending()));
+
+    private final String value;
+    private final Sort sort;
+
+    ReviewSort(String value, Sort sort) {
+        this.value = value;
+        this.sort = sort;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Resolves a request parameter value to a sort order.
+     *
+     * @param value the parameter value, e.g. "newest" or "highest"; may be null
+     * @param defaultSort the sort order to use when the value is missing or unknown
+     * @return the matching sort order
+     */
+    public static ReviewSort fromValue(String value, ReviewSort defaultSort) {
+        for (ReviewSort reviewSort : values()) {
+            if (reviewSort.value.equalsIgnoreCase(value)) {
+                return reviewSort;
+            }
+        }
+        return defaultSort;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ex4.dto;
+
+/**
+ * Matching modes supported by the live product search.
+ * <p>
+ * {@code AUTO} returns substring matches first and fills the remaining
+ * result slots with typo-tolerant matches, so a misspelled query still
+ * finds products.
+ * </p>
+ */
+public enum SearchMode {
+
+    EXACT("exact"),
+    FUZZY("fuzzy"),
+    AUTO("auto");
+
+    private final String value;
+
+    SearchMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Resolves a request parameter value to a search mode.
+     *
+     * @param value the parameter value, e.g. "exact" or "fuzzy"; may be null
+     * @param defaultMode the mode to use when the value is missing or unknown
+     * @return the matching search mode
+     */
+    public static SearchMode fromValue(String value, SearchMode defaultMode) {
+        for (SearchMode mode : values()) {
+            if (mode.value.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        return defaultMode;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ex4.exceptions;
+
+import java.util.List;
+
+/**
+ * Thrown when a checkout cannot be completed because one or more cart lines
+ * ask for more units than are left in stock.
+ * <p>
+ * Carries one message per failed line so the payment page can tell the
+ * shopper exactly which products to adjust.
+ * </p>
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** One human-readable message per cart line that could not be fulfilled. */
+    private final List<String> failedLines;
+
+    /**
+     * Creates the exception for the given failed cart lines.
+     *
+     * @param failedLines one message per cart line that could not be fulfilled
+     */
+    public InsufficientStockException(List<String> failedLines) {
+        super("Insufficient stock: " + String.join("; ", failedLines));
+        this.failedLines = List.copyOf(failedLines);
+    }
+
+    /**
+     * Returns one message per cart line that could not be fulfilled.
+     *
+     * @return the failed line messages
+     */
+    public List<String> getFailedLines() {
+        return failedLines;
+    }
+}
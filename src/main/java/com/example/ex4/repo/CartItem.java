@@ -1,7 +1,6 @@
 package com.example.ex4.repo;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.PositiveOrZero;
 
 /**
@@ -24,7 +23,6 @@ public class CartItem {
      * Quantity of the product in the cart. Must be zero or positive.
      */
     @PositiveOrZero
-    @NotEmpty(message = "price is mandatory")
     private int quantity;
 
     /**
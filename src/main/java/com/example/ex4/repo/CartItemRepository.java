@@ -1,6 +1,9 @@
 package com.example.ex4.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 /**
@@ -19,4 +22,26 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      */
     List<CartItem> getByUserAccount(UserAccount userAccount);
 
+    /**
+     * Deletes the saved cart lines of a product, e.g. before the product is deleted.
+     *
+     * @param productId the product id
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from CartItem c where c.product.id = :productId")
+    int deleteByProductId(long productId);
+
+    /**
+     * Deletes the saved cart lines of every product in a category, e.g. before the category is deleted.
+     *
+     * @param categoryId the category id
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from CartItem c where c.product.category.id = :categoryId")
+    int deleteByCategoryId(long categoryId);
+
 }
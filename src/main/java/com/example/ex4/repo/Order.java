@@ -2,6 +2,7 @@ package com.example.ex4.repo;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.validator.constraints.CreditCardNumber;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
@@ -15,14 +16,17 @@ import java.util.List;
  * and associations to the user account and individual order items.
  */
 @Entity
-@Table(name = "Orders")
+@Table(name = "Orders", uniqueConstraints = @UniqueConstraint(
+        name = "uk_orders_user_idempotency_key", columnNames = {"user_account_id", "idempotency_key"}))
 public class Order {
 
     /**
-     * Unique identifier for the order.
+     * Unique identifier for the order, allocated 50 at a time from a pooled
+     * sequence so new rows can be inserted in JDBC batches.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "orders_seq", allocationSize = 50)
     private long id;
 
     /**
@@ -95,6 +99,20 @@ public class Order {
     @DecimalMin("0.000001")
     private double totalPayment;
 
+    /**
+     * Key sent with the payment form that created this order; a repeated submit with
+     * the same key by the same user returns this order instead of placing another one.
+     */
+    @Column(length = 64)
+    private String idempotencyKey;
+
+    /**
+     * Whether this order's units have been subtracted from the product stock.
+     * Orders placed through the inventory ledger start out false until it writes them back.
+     */
+    @ColumnDefault("true")
+    private boolean inventoryApplied = true;
+
     /**
      * The user account that placed this order.
      */
@@ -313,6 +331,42 @@ public class Order {
         this.totalPayment = totalPayment;
     }
 
+    /**
+     * Returns the idempotency key of the payment form that created this order.
+     *
+     * @return the idempotency key, or null if the form did not send one
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Sets the idempotency key of the payment form that created this order.
+     *
+     * @param idempotencyKey the key to set
+     */
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Returns whether this order's units have been subtracted from the product stock.
+     *
+     * @return true if the stock was updated for this order
+     */
+    public boolean isInventoryApplied() {
+        return inventoryApplied;
+    }
+
+    /**
+     * Sets whether this order's units have been subtracted from the product stock.
+     *
+     * @param inventoryApplied true if the stock was updated for this order
+     */
+    public void setInventoryApplied(boolean inventoryApplied) {
+        this.inventoryApplied = inventoryApplied;
+    }
+
     /**
      * Returns the user account that placed this order.
      *
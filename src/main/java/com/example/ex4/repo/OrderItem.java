@@ -10,10 +10,12 @@ import jakarta.validation.constraints.Min;
 public class OrderItem {
 
     /**
-     * Unique identifier for the order item.
+     * Unique identifier for the order item, allocated 50 at a time from a pooled
+     * sequence so new rows can be inserted in JDBC batches.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
     private long id;
 
     /**
@@ -28,6 +30,12 @@ public class OrderItem {
     @Min(value = 1, message = "Quantity must be at least 1")
     private int quantity;
 
+    /**
+     * Unit price charged for the product when the order was placed;
+     * null for items saved before the price was recorded.
+     */
+    private Double unitPrice;
+
     /**
      * The order that this item belongs to.
      */
@@ -106,6 +114,34 @@ public class OrderItem {
         this.quantity = quantity;
     }
 
+    /**
+     * Returns the unit price charged for the product.
+     *
+     * @return the unit price, or null if the item predates recorded prices
+     */
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Sets the unit price charged for the product.
+     *
+     * @param unitPrice the unit price to set
+     */
+    public void setUnitPrice(Double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    /**
+     * Returns the amount charged for this item: quantity times the recorded unit price,
+     * or the product's current price for items that predate recorded prices.
+     *
+     * @return the item revenue
+     */
+    public double getRevenue() {
+        return quantity * (unitPrice != null ? unitPrice : product.getPrice());
+    }
+
     /**
      * Returns the order to which this item belongs.
      *
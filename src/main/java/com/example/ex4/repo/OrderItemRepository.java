@@ -1,14 +1,60 @@
 package com.example.ex4.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository interface for managing OrderItem entities.
  * <p>
- * Extends JpaRepository to provide standard CRUD operations for OrderItem.
+ * Extends JpaRepository to provide standard CRUD operations for OrderItem,
+ * a paginated listing, and sales aggregates for the admin dashboard.
  */
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
-    // Inherits create, read, update, delete, and pagination methods from JpaRepository
+
+    /**
+     * Retrieves one page of order items, newest first, together with their
+     * product, order, and ordering user.
+     *
+     * @param pageable the page to retrieve
+     * @return the requested page of order items
+     */
+    @EntityGraph(attributePaths = {"product", "product.category", "order", "order.userAccount"})
+    Page<OrderItem> findAllByOrderByIdDesc(Pageable pageable);
+
+    /**
+     * Sums the ordered quantity per product.
+     *
+     * @return rows of [Long productId, Long units]
+     */
+    @Query("select oi.product.id, sum(oi.quantity) from OrderItem oi group by oi.product.id")
+    List<Object[]> sumQuantityByProduct();
+
+    /**
+     * Sums the ordered quantity per product over the given orders.
+     *
+     * @param orderIds the order ids
+     * @return rows of [Long productId, Long units]
+     */
+    @Query("select oi.product.id, sum(oi.quantity) from OrderItem oi "
+            + "where oi.order.id in :orderIds group by oi.product.id")
+    List<Object[]> sumQuantityByProductForOrders(Collection<Long> orderIds);
+
+    /**
+     * Sums the revenue of ordered items per category at the price charged, falling back
+     * to the current product price for items that predate recorded prices.
+     *
+     * @return rows of [String categoryName, Double revenue]
+     */
+    @Query("select c.categoryName, sum(oi.quantity * coalesce(oi.unitPrice, p.price)) from OrderItem oi "
+            + "join oi.product p join p.category c group by c.categoryName")
+    List<Object[]> sumRevenueByCategory();
+
 }
@@ -1,15 +1,20 @@
 package com.example.ex4.repo;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing Order entities.
  * <p>
- * Extends JpaRepository to provide CRUD operations and custom query
- * to retrieve orders by user account.
+ * Extends JpaRepository to provide CRUD operations, a custom query
+ * to retrieve orders by user account, and aggregate queries for reporting.
  */
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -22,4 +27,58 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     List<Order> findByUserAccount(UserAccount userAccount);
 
+    /**
+     * Finds orders by id together with their items, products and categories.
+     *
+     * @param ids the order ids
+     * @return the orders found, in no particular order
+     */
+    @EntityGraph(attributePaths = {"orderItems", "orderItems.product", "orderItems.product.category"})
+    List<Order> findWithItemsByIdIn(Collection<Long> ids);
+
+    /**
+     * Finds the order a user placed with the payment form with the given idempotency key.
+     *
+     * @param idempotencyKey the key sent with the payment form
+     * @param email          the email of the user who sent the form
+     * @return the order id, or empty if the user has no order holding the key
+     */
+    @Query("select o.id from Order o where o.idempotencyKey = :idempotencyKey and o.userAccount.email = :email")
+    Optional<Long> findIdByIdempotencyKeyAndEmail(String idempotencyKey, String email);
+
+    /**
+     * Sums the total payment of all orders in the database.
+     *
+     * @return the total revenue, or 0 when there are no orders
+     */
+    @Query("select coalesce(sum(o.totalPayment), 0) from Order o")
+    double sumTotalPayment();
+
+    /**
+     * Sums the total payment of all orders per order day.
+     *
+     * @return rows of [LocalDate day, Double revenue]
+     */
+    @Query("select cast(o.createdAt as LocalDate), sum(o.totalPayment) from Order o "
+            + "group by cast(o.createdAt as LocalDate)")
+    List<Object[]> sumTotalPaymentByDay();
+
+    /**
+     * Finds the orders whose units have not been subtracted from the product stock yet.
+     *
+     * @return ids of the orders waiting for the inventory write-back, oldest first
+     */
+    @Query("select o.id from Order o where o.inventoryApplied = false order by o.id")
+    List<Long> findIdsWithUnappliedInventory();
+
+    /**
+     * Marks orders as subtracted from the product stock.
+     *
+     * @param orderIds ids of the orders written back
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("update Order o set o.inventoryApplied = true where o.id in :orderIds")
+    int markInventoryApplied(Collection<Long> orderIds);
+
 }
@@ -0,0 +1,150 @@
+package com.example.ex4.repo;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An event waiting in the transactional outbox.
+ * <p>
+ * Saved in the same transaction as the change it describes, so an event exists
+ * exactly when that change was committed. The outbox dispatcher delivers pending
+ * events to in-process listeners and then marks them processed.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_outbox_event_pending", columnList = "processedAt, id")
+})
+public class OutboxEvent {
+
+    /**
+     * Event type of an order that was placed; the aggregate id is the order id.
+     */
+    public static final String ORDER_PLACED = "OrderPlaced";
+
+    /**
+     * Longest failure message kept on an event.
+     */
+    public static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * Unique identifier of the event, increasing in the order events are saved
+     * and allocated 50 at a time from a pooled sequence.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private long id;
+
+    /**
+     * Event type, e.g. {@link #ORDER_PLACED}.
+     */
+    @Column(nullable = false, length = 50)
+    private String type;
+
+    /**
+     * Id of the entity the event is about.
+     */
+    private long aggregateId;
+
+    /**
+     * Timestamp when the event was saved.
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Timestamp when the event was delivered or given up; null while pending.
+     */
+    private LocalDateTime processedAt;
+
+    /**
+     * Number of failed deliveries.
+     */
+    private int attempts;
+
+    /**
+     * Message of the last failed delivery, if any.
+     */
+    @Column(length = MAX_ERROR_LENGTH)
+    private String lastError;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public OutboxEvent() {
+    }
+
+    /**
+     * Constructs a pending event stamped with the current time.
+     *
+     * @param type        the event type
+     * @param aggregateId the id of the entity the event is about
+     */
+    public OutboxEvent(String type, long aggregateId) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Returns the event id.
+     *
+     * @return the id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the event type.
+     *
+     * @return the type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the id of the entity the event is about.
+     *
+     * @return the aggregate id
+     */
+    public long getAggregateId() {
+        return aggregateId;
+    }
+
+    /**
+     * Returns the timestamp when the event was saved.
+     *
+     * @return the creation timestamp
+     */
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Returns the timestamp when the event was processed.
+     *
+     * @return the processing timestamp, or null while pending
+     */
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+
+    /**
+     * Returns the number of failed deliveries.
+     *
+     * @return the attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Returns the message of the last failed delivery.
+     *
+     * @return the last error, or null
+     */
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ex4.repo;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for managing OutboxEvent entities.
+ * <p>
+ * Provides the queries used by the outbox dispatcher to read pending events in
+ * the order they were saved, record their delivery, and purge old ones.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Finds the oldest pending events.
+     *
+     * @param limit the maximum number of events to return
+     * @return pending events, oldest first
+     */
+    List<OutboxEvent> findByProcessedAtIsNullOrderByIdAsc(Limit limit);
+
+    /**
+     * Finds the aggregate ids of all pending events of a type.
+     *
+     * @param type the event type
+     * @return aggregate ids of the pending events
+     */
+    @Query("select e.aggregateId from OutboxEvent e where e.type = :type and e.processedAt is null")
+    List<Long> findPendingAggregateIds(String type);
+
+    /**
+     * Marks events as processed.
+     *
+     * @param ids         ids of the events
+     * @param processedAt the processing timestamp
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("update OutboxEvent e set e.processedAt = :processedAt where e.id in :ids")
+    int markProcessed(Collection<Long> ids, LocalDateTime processedAt);
+
+    /**
+     * Records a failed delivery of events.
+     *
+     * @param ids   ids of the events
+     * @param error message of the failure
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("update OutboxEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.id in :ids")
+    int recordFailure(Collection<Long> ids, String error);
+
+    /**
+     * Deletes events processed before the given time.
+     *
+     * @param cutoff the oldest processing timestamp to keep
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("delete from OutboxEvent e where e.processedAt < :cutoff")
+    int deleteProcessedBefore(LocalDateTime cutoff);
+}
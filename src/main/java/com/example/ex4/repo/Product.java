@@ -5,11 +5,14 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a product available for purchase, including details such as name,
@@ -78,11 +81,59 @@ public class Product implements Serializable {
     private MultipartFile file;
 
     /**
-     * List of reviews submitted for this product.
+     * List of reviews submitted for this product; JSON ignored since listings do not load it.
      */
+    @JsonIgnore
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Review> reviews;
 
+    /**
+     * Number of reviews submitted for this product.
+     * <p>
+     * This and the rating fields below are maintained by {@code ProductRepository.addReviewRating}
+     * so ratings can be shown without loading the reviews. They have no setters, so form
+     * binding can never overwrite them.
+     * </p>
+     */
+    @ColumnDefault("0")
+    private long reviewCount;
+
+    /**
+     * Sum of the ratings of all reviews of this product.
+     */
+    @ColumnDefault("0")
+    private long ratingSum;
+
+    /**
+     * Number of 1-star reviews.
+     */
+    @ColumnDefault("0")
+    private long rating1Count;
+
+    /**
+     * Number of 2-star reviews.
+     */
+    @ColumnDefault("0")
+    private long rating2Count;
+
+    /**
+     * Number of 3-star reviews.
+     */
+    @ColumnDefault("0")
+    private long rating3Count;
+
+    /**
+     * Number of 4-star reviews.
+     */
+    @ColumnDefault("0")
+    private long rating4Count;
+
+    /**
+     * Number of 5-star reviews.
+     */
+    @ColumnDefault("0")
+    private long rating5Count;
+
     /**
      * Default constructor initializing default values and review collection.
      */
@@ -289,23 +340,56 @@ public class Product implements Serializable {
         this.reviews = reviews;
     }
 
+    /**
+     * Returns the number of reviews of this product.
+     *
+     * @return review count
+     */
+    public long getReviewCount() {
+        return reviewCount;
+    }
+
+    /**
+     * Returns the sum of the ratings of all reviews of this product.
+     *
+     * @return rating sum
+     */
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
     // Other Functions
 
     /**
-     * Calculates the average rating of all reviews.
+     * Returns the average rating of all reviews.
      *
-     * @return integer average rating, or 0 if no reviews
+     * @return fractional average rating, or 0 if no reviews
      */
-    public int getReviewsAverage() {
-        if (reviews == null || reviews.isEmpty()) {
-            return 0;
-        }
+    public double getReviewsAverage() {
+        return reviewCount == 0 ? 0 : (double) ratingSum / reviewCount;
+    }
 
-        int total = 0;
-        for (Review review : reviews) {
-            total += review.getRating();
-        }
+    /**
+     * Returns the average rating rounded to whole stars, for star displays.
+     *
+     * @return rounded average rating (0–5), 0 if no reviews
+     */
+    public int getStarRating() {
+        return (int) Math.round(getReviewsAverage());
+    }
 
-        return total / reviews.size();
+    /**
+     * Returns the number of reviews per star rating.
+     *
+     * @return map of stars (5 down to 1) to review count
+     */
+    public Map<Integer, Long> getRatingHistogram() {
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        histogram.put(5, rating5Count);
+        histogram.put(4, rating4Count);
+        histogram.put(3, rating3Count);
+        histogram.put(2, rating2Count);
+        histogram.put(1, rating1Count);
+        return histogram;
     }
 }
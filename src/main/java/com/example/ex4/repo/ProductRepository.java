@@ -1,8 +1,18 @@
 package com.example.ex4.repo;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,14 +32,214 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
       */
      Optional<Product> findById(long id);
 
+     /**
+      * Retrieves a product by its ID together with its category,
+      * so the result can be used outside of the loading session.
+      *
+      * @param id the ID of the product
+      * @return an Optional containing the product if found, otherwise empty
+      */
+     @EntityGraph(attributePaths = "category")
+     Optional<Product> findWithCategoryById(long id);
+
+     /**
+      * Retrieves a product by its ID and locks its row until the current transaction ends,
+      * so counters written by concurrent stock and review updates are read current and
+      * are not overwritten when the product is saved.
+      *
+      * @param id the ID of the product
+      * @return an Optional containing the locked product if found, otherwise empty
+      */
+     @Lock(LockModeType.PESSIMISTIC_WRITE)
+     Optional<Product> findForUpdateById(long id);
+
+     /**
+      * Retrieves the products of a category and locks their rows until the current
+      * transaction ends, so no cart line can be saved for them while they are deleted.
+      *
+      * @param categoryId the ID of the category
+      * @return the locked products of the category
+      */
+     @Lock(LockModeType.PESSIMISTIC_WRITE)
+     List<Product> findForUpdateByCategoryId(long categoryId);
+
      /**
       * Finds all products in the specified category.
       *
       * @param category the category to filter products by
       * @return a list of products belonging to the given category
       */
+     @EntityGraph(attributePaths = "category")
      List<Product> findByCategory(Category category);
 
+     /**
+      * Retrieves the products with the given IDs together with their category in a single query.
+      *
+      * @param ids the IDs of the products to load
+      * @return the products found; missing IDs are skipped
+      */
+     @EntityGraph(attributePaths = "category")
+     List<Product> findWithCategoryByIdIn(Collection<Long> ids);
+
+     /**
+      * Retrieves all products together with their category.
+      *
+      * @return a list of all products
+      */
+     @EntityGraph(attributePaths = "category")
+     @Query("select p from Product p")
+     List<Product> findAllWithCategory();
+
+     /**
+      * Retrieves one keyset-paginated window of the products in a category.
+      *
+      * @param category the category to filter products by
+      * @param position the position after which to continue
+      * @param sort     the sort order, ending with a unique attribute
+      * @param limit    the maximum number of products to return
+      * @return the window of products and the position of each element
+      */
+     @EntityGraph(attributePaths = "category")
+     Window<Product> findByCategory(Category category, ScrollPosition position, Sort sort, Limit limit);
+
+     /**
+      * Retrieves one keyset-paginated window of all products.
+      *
+      * @param position the position after which to continue
+      * @param sort     the sort order, ending with a unique attribute
+      * @param limit    the maximum number of products to return
+      * @return the window of products and the position of each element
+      */
+     @EntityGraph(attributePaths = "category")
+     Window<Product> findBy(ScrollPosition position, Sort sort, Limit limit);
+
+     /**
+      * Retrieves the values the product filter facets are built from, ordered by id.
+      *
+      * @return rows of [Long id, String categoryName, Double price, Integer inventory,
+      *         Long ratingSum, Long reviewCount]
+      */
+     @Query("select p.id, c.categoryName, p.price, p.inventory, p.ratingSum, p.reviewCount"
+             + " from Product p left join p.category c order by p.id")
+     List<Object[]> findAllFacetValues();
+
+     /**
+      * Adds one review rating to a product's review aggregates in a single atomic update,
+      * so concurrent reviews never overwrite each other's counts.
+      *
+      * @param productId the ID of the reviewed product
+      * @param rating    the rating of the new review (1–5)
+      * @return the number of updated products
+      */
+     @Modifying
+     @Query("update Product p set p.reviewCount = p.reviewCount + 1, p.ratingSum = p.ratingSum + :rating,"
+             + " p.rating1Count = p.rating1Count + case when :rating = 1 then 1 else 0 end,"
+             + " p.rating2Count = p.rating2Count + case when :rating = 2 then 1 else 0 end,"
+             + " p.rating3Count = p.rating3Count + case when :rating = 3 then 1 else 0 end,"
+             + " p.rating4Count = p.rating4Count + case when :rating = 4 then 1 else 0 end,"
+             + " p.rating5Count = p.rating5Count + case when :rating = 5 then 1 else 0 end"
+             + " where p.id = :productId")
+     int addReviewRating(long productId, int rating);
+
+     /**
+      * Takes units out of stock only if enough are left, as one atomic conditional update.
+      * <p>
+      * The update locks just this product's row, so concurrent checkouts of different
+      * products never wait for each other, and two checkouts of the same product can
+      * never both take the last units.
+      * </p>
+      *
+      * @param productId the ID of the product
+      * @param quantity  the number of units to take
+      * @return 1 if the stock was decremented, 0 if fewer than {@code quantity} units were left
+      */
+     @Modifying
+     @Query("update Product p set p.inventory = p.inventory - :quantity"
+             + " where p.id = :productId and p.inventory >= :quantity")
+     int decrementInventory(long productId, int quantity);
+
+     /**
+      * Puts back units taken by {@link #decrementInventory(long, int)}.
+      *
+      * @param productId the ID of the product
+      * @param quantity  the number of units to put back
+      * @return the number of updated rows
+      */
+     @Modifying
+     @Query("update Product p set p.inventory = p.inventory + :quantity where p.id = :productId")
+     int restoreInventory(long productId, int quantity);
+
+     /**
+      * Reads a product's current stock without loading the entity.
+      *
+      * @param productId the ID of the product
+      * @return the units in stock, or null if the product does not exist
+      */
+     @Query("select p.inventory from Product p where p.id = :productId")
+     Integer findInventoryById(long productId);
+
+     /**
+      * Subtracts units that were already sold through the inventory ledger.
+      *
+      * @param productId the ID of the product
+      * @param quantity  the number of units sold
+      * @return the number of updated rows
+      */
+     @Modifying
+     @Query("update Product p set p.inventory = p.inventory - :quantity where p.id = :productId")
+     int subtractInventory(long productId, int quantity);
+
+     /**
+      * Reads the stock of every product without loading the entities.
+      *
+      * @return rows of [Long id, Integer inventory]
+      */
+     @Query("select p.id, p.inventory from Product p")
+     List<Object[]> findAllInventories();
+
+     /**
+      * Reads the stock of the given products without loading the entities.
+      *
+      * @param ids the product ids
+      * @return rows of [Long id, Integer inventory]
+      */
+     @Query("select p.id, p.inventory from Product p where p.id in :ids")
+     List<Object[]> findInventoriesByIdIn(Collection<Long> ids);
+
+     /**
+      * Recomputes the review aggregates of every product from the reviews table.
+      *
+      * @return the number of updated products
+      */
+     @Modifying
+     @Query("update Product p set"
+             + " p.reviewCount = (select count(r) from Review r where r.product = p),"
+             + " p.ratingSum = (select coalesce(sum(r.rating), 0) from Review r where r.product = p),"
+             + " p.rating1Count = (select count(r) from Review r where r.product = p and r.rating = 1),"
+             + " p.rating2Count = (select count(r) from Review r where r.product = p and r.rating = 2),"
+             + " p.rating3Count = (select count(r) from Review r where r.product = p and r.rating = 3),"
+             + " p.rating4Count = (select count(r) from Review r where r.product = p and r.rating = 4),"
+             + " p.rating5Count = (select count(r) from Review r where r.product = p and r.rating = 5)")
+     int recomputeReviewAggregates();
+
+     /**
+      * Reads a product's current average rating from its review aggregates.
+      *
+      * @param productId the ID of the product
+      * @return the average rating, or 0 if the product has no reviews
+      */
+     @Query("select case when p.reviewCount = 0 then 0.0 else 1.0 * p.ratingSum / p.reviewCount end"
+             + " from Product p where p.id = :productId")
+     double findReviewsAverageById(long productId);
+
+     /**
+      * Retrieves the id and name of every product, without loading full entities.
+      *
+      * @return rows of [Long id, String productName]
+      */
+     @Query("select p.id, p.productName from Product p")
+     List<Object[]> findAllIdsAndNames();
+
      /**
       * Retrieves the top 5 products whose names contain the given keyword, ignoring case.
       *
@@ -38,4 +248,12 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
       */
      List<Product> findTop5ByProductNameContainingIgnoreCase(String name);
 
+     /**
+      * Counts the products that use the given stored image.
+      *
+      * @param imageUrl the stored image name
+      * @return the number of products referencing the image
+      */
+     long countByImageUrl(String imageUrl);
+
 }
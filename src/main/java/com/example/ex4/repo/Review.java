@@ -1,5 +1,6 @@
 package com.example.ex4.repo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -13,13 +14,19 @@ import java.io.Serializable;
  * and links to the reviewed product and submitting user account.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_review_product_created", columnList = "product_id, createdAt, id"),
+        @Index(name = "idx_review_product_rating", columnList = "product_id, rating, id")
+})
 public class Review implements Serializable {
 
     /**
-     * Unique identifier for the review.
+     * Unique identifier for the review, allocated 50 at a time from a pooled
+     * sequence so new rows can be inserted in JDBC batches.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "review_seq")
+    @SequenceGenerator(name = "review_seq", sequenceName = "review_seq", allocationSize = 50)
     private long id;
 
     /**
@@ -53,14 +60,16 @@ public class Review implements Serializable {
     private String comment;
 
     /**
-     * The product this review refers to.
+     * The product this review refers to; JSON ignored to prevent circular references.
      */
+    @JsonIgnore
     @ManyToOne
     private Product product;
 
     /**
-     * The user account that submitted this review.
+     * The user account that submitted this review; JSON ignored so account details are not exposed.
      */
+    @JsonIgnore
     @ManyToOne
     private UserAccount userAccount;
 
@@ -1,6 +1,11 @@
 package com.example.ex4.repo;
 
 import com.example.ex4.repo.Review;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -23,4 +28,16 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
      */
     List<Review> findByProductId(Long productId);
 
+    /**
+     * Retrieves one keyset-paginated window of a product's reviews together with their authors.
+     *
+     * @param productId the ID of the product
+     * @param position  the position after which to continue
+     * @param sort      the sort order, ending with the review ID
+     * @param limit     the maximum number of reviews to return
+     * @return the window of reviews
+     */
+    @EntityGraph(attributePaths = "userAccount")
+    Window<Review> findByProductId(Long productId, ScrollPosition position, Sort sort, Limit limit);
+
 }
@@ -0,0 +1,54 @@
+package com.example.ex4.repo;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * One serialized attribute of a stored HTTP session.
+ * <p>
+ * Only maps the {@code http_session_attribute} table so its schema is managed with
+ * the other entities; rows are read and written by
+ * {@link com.example.ex4.session.JdbcSessionStore}.
+ */
+@Entity
+@Table(name = "http_session_attribute")
+@IdClass(SessionAttributeRecord.Key.class)
+public class SessionAttributeRecord {
+
+    /**
+     * Id of the session the attribute belongs to.
+     */
+    @Id
+    @Column(length = 64)
+    private String sessionId;
+
+    /**
+     * The attribute name.
+     */
+    @Id
+    @Column(length = 200)
+    private String attributeName;
+
+    /**
+     * The serialized attribute value.
+     */
+    @Lob
+    @Column(nullable = false, length = 16777215)
+    private byte[] attributeValue;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public SessionAttributeRecord() {
+    }
+
+    /**
+     * Primary key of an attribute row.
+     *
+     * @param sessionId     id of the session the attribute belongs to
+     * @param attributeName the attribute name
+     */
+    public record Key(String sessionId, String attributeName) implements Serializable {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ex4.repo;
+
+import jakarta.persistence.*;
+
+/**
+ * A stored HTTP session, without its attributes.
+ * <p>
+ * Only maps the {@code http_session} table so its schema is managed with the
+ * other entities; rows are read and written by
+ * {@link com.example.ex4.session.JdbcSessionStore}.
+ */
+@Entity
+@Table(name = "http_session", indexes = {
+        @Index(name = "http_session_expiry_idx", columnList = "expiryTime")
+})
+public class SessionRecord {
+
+    /**
+     * The session id.
+     */
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    /**
+     * Creation time in milliseconds.
+     */
+    private long creationTime;
+
+    /**
+     * Last access time in milliseconds.
+     */
+    private long lastAccessedTime;
+
+    /**
+     * Seconds of inactivity after which the session expires; negative for never.
+     */
+    private int maxInactiveSeconds;
+
+    /**
+     * Time in milliseconds after which the session may be deleted.
+     */
+    private long expiryTime;
+
+    /**
+     * Default constructor for JPA.
+     */
+    public SessionRecord() {
+    }
+}
@@ -5,19 +5,33 @@ import com.example.ex4.repo.CartItemRepository;
 import com.example.ex4.repo.Product;
 import com.example.ex4.repo.UserAccount;
 import com.example.ex4.session.CartSession;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.event.InteractiveAuthenticationSuccessEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing operations related to cart items.
  * <p>
- * Provides functionality to add, remove, and retrieve cart items
- * for authenticated users by coordinating between the repository,
- * user account service, and product service.
+ * Persists the carts of logged-in users with a write-behind store: every change
+ * of a cart only marks it dirty in memory, and a scheduled flush takes a snapshot
+ * of each dirty cart and writes it to the cart item table.
+ * Rapid adds and removes therefore cost one write per flush interval, and none of
+ * them waits for the database. The saved cart is loaded once, when the user logs
+ * in, and merged into the session cart; this way carts survive session expiry and
+ * restarts. Pending snapshots are flushed on shutdown.
+ * </p>
  */
 @Service
 public class CartItemService {
@@ -40,10 +54,147 @@ public class CartItemService {
     @Autowired
     private ProductService productService;
 
+    /**
+     * Runs the write of every cart in its own transaction.
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Session bean for maintaining the current user's cart state.
      */
     @Resource(name = "cartSessionBean")
     private CartSession cartSession;
 
+    /**
+     * Carts changed since they were last written, keyed by the owner's email.
+     */
+    private final Map<String, CartSession> pending = new ConcurrentHashMap<>();
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Marks a user's cart dirty; its contents are read when the cart is written.
+     *
+     * @param email the email of the cart owner
+     * @param cart  the changed cart
+     */
+    public void scheduleSave(String email, CartSession cart) {
+        pending.put(email, cart);
+    }
+
+    /**
+     * Returns the saved cart of a user, including changes not written yet.
+     *
+     * @param email the email of the cart owner
+     * @return quantities keyed by product id, in the order the lines were added
+     */
+    public Map<Long, Integer> loadCart(String email) {
+        CartSession unsaved = pending.get(email);
+        if (unsaved != null) {
+            return unsaved.snapshot();
+        }
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (CartItem row : cartItemRepository.getByUserAccount(userAccountService.getByEmail(email))) {
+            lines.merge(row.getProduct().getId(), row.getQuantity(), Integer::sum);
+        }
+        return lines;
+    }
+
+    /**
+     * Merges the saved cart into the session cart when a user logs in, and makes
+     * the session cart save its later changes for that user.
+     *
+     * @param event the login event, published on the login request thread
+     */
+    @EventListener
+    public void restoreCart(InteractiveAuthenticationSuccessEvent event) {
+        String email = event.getAuthentication().getName();
+        Map<Long, Integer> saved = loadCart(email);
+        Map<Long, Product> products = productService.getProductsByIds(saved.keySet());
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        saved.forEach((productId, quantity) -> {
+            if (products.containsKey(productId)) {
+                lines.put(productId, quantity);
+            }
+        });
+        cartSession.restore(email, lines);
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically writes a snapshot of every dirty cart.
+     * <p>
+     * A cart whose write fails is marked dirty again unless it changed in the meantime.
+     * </p>
+     *
+     * @return the number of carts written
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}")
+    public synchronized int flush() {
+        int written = 0;
+        for (String email : List.copyOf(pending.keySet())) {
+            CartSession cart = pending.remove(email);
+            if (cart == null) {
+                continue;
+            }
+            Map<Long, Integer> lines = cart.snapshot();
+            try {
+                transactionTemplate.executeWithoutResult(status -> save(email, lines));
+                written++;
+            } catch (RuntimeException e) {
+                pending.putIfAbsent(email, cart);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes the carts still pending before the application stops.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Makes the stored cart rows of a user match a snapshot, touching only the lines
+     * that changed.
+     *
+     * @param email the email of the cart owner
+     * @param lines quantities keyed by product id
+     */
+    private void save(String email, Map<Long, Integer> lines) {
+        UserAccount userAccount = userAccountService.getByEmail(email);
+        Map<Long, Product> products = productService.getProductsByIds(lines.keySet());
+        Map<Long, CartItem> stored = new HashMap<>();
+        List<CartItem> removed = new ArrayList<>();
+        for (CartItem row : cartItemRepository.getByUserAccount(userAccount)) {
+            long productId = row.getProduct().getId();
+            Integer quantity = lines.get(productId);
+            if (quantity == null || !products.containsKey(productId) || stored.putIfAbsent(productId, row) != null) {
+                removed.add(row);
+            } else if (row.getQuantity() != quantity) {
+                row.setQuantity(quantity);
+            }
+        }
+        List<CartItem> added = new ArrayList<>();
+        lines.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product != null && !stored.containsKey(productId)) {
+                added.add(new CartItem(quantity, product, userAccount));
+            }
+        });
+        cartItemRepository.deleteAll(removed);
+        cartItemRepository.saveAll(added);
+    }
 }
@@ -1,15 +1,27 @@
 package com.example.ex4.services;
 
+import com.example.ex4.components.InventoryLedger;
+import com.example.ex4.components.ProductCatalogCache;
+import com.example.ex4.components.ProductFacetIndex;
+import com.example.ex4.components.ProductSearchIndex;
 import com.example.ex4.repo.Category;
+import com.example.ex4.repo.CartItemRepository;
 import com.example.ex4.repo.CategoryRepository;
+import com.example.ex4.repo.Product;
+import com.example.ex4.repo.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service for managing product categories.
@@ -27,6 +39,69 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    /**
+     * Repository used to lock the products of a deleted category.
+     */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /**
+     * Repository used to delete the saved cart lines of a deleted category's products.
+     */
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    /**
+     * In-memory stock ledger, told to forget the products of a deleted category.
+     */
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    /**
+     * Service deleting the images of a deleted category's products.
+     */
+    @Autowired
+    private StorageService storageService;
+
+    /**
+     * Runs the deletion of a category and its products in one transaction.
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Product catalog cache, flushed when a category (and its products) is deleted.
+     */
+    @Autowired
+    private ProductCatalogCache catalogCache;
+
+    /**
+     * Product search index, rebuilt when a category (and its products) is deleted.
+     */
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    /**
+     * Product facet index, rebuilt when a category (and its products) is deleted.
+     */
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    /**
+     * Snapshot of all categories, rebuilt lazily after a category is added or deleted.
+     */
+    private volatile List<Category> cachedCategories;
+
+    /**
+     * Number of category list lookups answered from the snapshot.
+     */
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * Number of category list lookups that had to query the database.
+     */
+    private final LongAdder cacheMisses = new LongAdder();
+
     /**
      * Persists a new category to the database.
      *
@@ -34,7 +109,9 @@ public class CategoryService {
      * @return the saved Category entity
      */
     public Category addCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        invalidateCategories();
+        return saved;
     }
 
     /**
@@ -54,25 +131,88 @@ public class CategoryService {
     }
 
     /**
-     * Deletes a category by its ID.
+     * Deletes a category by its ID together with its products and their saved cart lines,
+     * forgets the products in the caches, indexes and stock ledger, and deletes their
+     * images unless another product still uses them.
+     * <p>
+     * The product rows are locked first, so the cart write-behind cannot save a line
+     * for one of them between the cart lines and the products being deleted.
+     * </p>
      *
      * @param id the ID of the category to delete
      * @throws ResponseStatusException with status NOT_FOUND if the category does not exist
+     * @throws IOException if an error occurs during image deletion
      */
-    public void deleteCategory(long id) {
+    public void deleteCategory(long id) throws IOException {
         if (!categoryRepository.existsById(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category not found");
         }
-        categoryRepository.deleteById(id);
+        List<Product> products = transactionTemplate.execute(status -> {
+            List<Product> locked = productRepository.findForUpdateByCategoryId(id);
+            cartItemRepository.deleteByCategoryId(id);
+            categoryRepository.deleteById(id);
+            return locked;
+        });
+        products.forEach(product -> inventoryLedger.remove(product.getId()));
+        invalidateCategories();
+        catalogCache.invalidateAll();
+        searchIndex.rebuild();
+        facetIndex.rebuild();
+        Set<String> imageUrls = new HashSet<>();
+        products.forEach(product -> imageUrls.add(product.getImageUrl()));
+        for (String imageUrl : imageUrls) {
+            storageService.deleteImage(imageUrl);
+        }
     }
 
     /**
      * Retrieves all categories in the system.
+     * <p>
+     * The list is cached in memory until a category is added or deleted,
+     * so rendering the navbar does not query the database.
+     * </p>
      *
-     * @return list of all Category entities
+     * @return unmodifiable list of all Category entities
      */
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        List<Category> categories = cachedCategories;
+        if (categories != null) {
+            cacheHits.increment();
+            return categories;
+        }
+        synchronized (this) {
+            if (cachedCategories == null) {
+                cacheMisses.increment();
+                cachedCategories = List.copyOf(categoryRepository.findAll());
+            }
+            return cachedCategories;
+        }
+    }
+
+    /**
+     * Drops the cached category list; waits for an in-flight reload so it cannot
+     * overwrite the invalidation with stale data.
+     */
+    private synchronized void invalidateCategories() {
+        cachedCategories = null;
+    }
+
+    /**
+     * Returns the number of category list lookups served from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns the number of category list lookups that queried the database.
+     *
+     * @return the cache miss count
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
     }
 
     /**
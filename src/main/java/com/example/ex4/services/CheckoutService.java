@@ -0,0 +1,325 @@
+package com.example.ex4.services;
+
+import com.example.ex4.dto.OrderCommand;
+import com.example.ex4.dto.OrderStatus;
+import com.example.ex4.exceptions.InsufficientStockException;
+import com.example.ex4.repo.Order;
+import com.example.ex4.repo.OrderItem;
+import com.example.ex4.repo.OrderRepository;
+import com.example.ex4.session.CartSession;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service that places orders at most once per checkout request.
+ * <p>
+ * Every payment form carries an idempotency key that is stored on the order it
+ * creates. A repeated submit with the same key by the same user (a double click,
+ * a browser retry, or a client retrying under load) returns the order created by
+ * the first submit instead of running the checkout again. Keys are scoped to the
+ * user, so a key sent by another account is treated as a new one:
+ * </p>
+ * <ul>
+ *     <li>while the first submit is still running, repeats wait for its result;</li>
+ *     <li>recently completed keys are answered from memory;</li>
+ *     <li>older keys are found on the orders table, whose unique (user, key)
+ *     constraint also rejects a duplicate that slips past both checks.</li>
+ * </ul>
+ * <p>
+ * A checkout that fails (for example on missing stock) forgets its key, so the
+ * shopper can fix the cart and submit the same form again.
+ * </p>
+ * <p>
+ * When the {@link OrderPipeline} is enabled, {@link #submit(Order, Principal)} queues
+ * the order instead and returns the key under which its status can be polled with
+ * {@link #getStatus(String, Principal)}. The cart is emptied while the order is queued
+ * and its lines are put back if the order fails.
+ * </p>
+ */
+@Service
+public class CheckoutService {
+
+    /** Longest accepted idempotency key; longer keys are ignored. */
+    private static final int MAX_KEY_LENGTH = 64;
+
+    /** Seconds a repeated submit waits for the first submit to finish. */
+    private static final long WAIT_SECONDS = 30;
+
+    /** Message shown for queued orders that were lost before they were placed. */
+    private static final String LOST = "Your order could not be placed, please try again";
+
+    /**
+     * Service that creates the order.
+     */
+    @Autowired
+    private OrderService orderService;
+
+    /**
+     * Repository used to find orders placed by earlier submits.
+     */
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /**
+     * Asynchronous pipeline that places queued orders in batches.
+     */
+    @Autowired
+    private OrderPipeline orderPipeline;
+
+    /**
+     * Session-scoped bean holding the cart being checked out.
+     */
+    @Resource(name = "cartSessionBean")
+    private CartSession cartSession;
+
+    /** Seconds a completed key is answered from memory before falling back to the database. */
+    @Value("${checkout.idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /** Submits in flight or recently completed, keyed by user and idempotency key. */
+    private final Map<String, Attempt> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * One checkout submit and the order id it produces.
+     *
+     * @param result    completes with the order id once the order is committed
+     * @param startedAt time in milliseconds the submit started
+     */
+    private record Attempt(CompletableFuture<Long> result, long startedAt) {
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Places the order unless its idempotency key was already used, in which case the
+     * order created by the earlier submit is returned.
+     *
+     * @param order     the order bound from the payment form, including its idempotency key
+     * @param principal the security principal representing the authenticated user
+     * @return the id of the placed order
+     */
+    public long checkout(Order order, Principal principal) {
+        String key = order.getIdempotencyKey();
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            order.setIdempotencyKey(null);
+            orderService.addOrder(order, principal);
+            return order.getId();
+        }
+
+        String email = principal.getName();
+        String scopedKey = email + "\n" + key;
+        Attempt attempt = new Attempt(new CompletableFuture<>(), System.currentTimeMillis());
+        Attempt earlier = attempts.putIfAbsent(scopedKey, attempt);
+        if (earlier != null) {
+            return await(earlier);
+        }
+
+        try {
+            long orderId = findOrder(key, email).orElseGet(() -> place(order, principal, key));
+            attempt.result().complete(orderId);
+            return orderId;
+        } catch (RuntimeException e) {
+            attempts.remove(scopedKey, attempt);
+            attempt.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether checkout goes through the asynchronous pipeline.
+     *
+     * @return true if orders are queued by {@link #submit(Order, Principal)}
+     */
+    public boolean isAsync() {
+        return orderPipeline.isEnabled();
+    }
+
+    /**
+     * Queues the order for the asynchronous pipeline and hands the cart off to it.
+     * <p>
+     * Checks the cart against the current stock first, so an order that is obviously
+     * short fails right away. A repeated submit of the same form queues nothing. If the
+     * queue is full the order is placed right away instead.
+     * </p>
+     *
+     * @param order     the order bound from the payment form
+     * @param principal the security principal representing the authenticated user
+     * @return the idempotency key under which the order status can be polled
+     * @throws InsufficientStockException if a cart line asks for more units than are in stock
+     */
+    public String submit(Order order, Principal principal) {
+        String key = order.getIdempotencyKey();
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            key = UUID.randomUUID().toString();
+            order.setIdempotencyKey(key);
+        }
+        String email = principal.getName();
+        if (!orderPipeline.claim(key, email)) {
+            return key;
+        }
+
+        try {
+            Optional<Long> existing = findOrder(key, email);
+            if (existing.isPresent()) {
+                orderPipeline.recordPlaced(key, email, existing.get());
+                return key;
+            }
+            OrderCommand command = orderService.prepareOrder(order, principal);
+            checkStock(command);
+            if (orderPipeline.enqueue(command)) {
+                cartSession.handOff(key);
+            } else {
+                orderPipeline.recordPlaced(key, email, checkout(order, principal));
+            }
+            return key;
+        } catch (RuntimeException e) {
+            orderPipeline.forget(key, email);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the status of an order submitted to the asynchronous pipeline and settles
+     * the cart it was handed off from: once the order failed its lines are put back.
+     * <p>
+     * An order the pipeline no longer tracks, e.g. after a restart, is looked up on the
+     * orders table; if it was never placed it is reported as failed.
+     * </p>
+     *
+     * @param key       the idempotency key of the payment form
+     * @param principal the authenticated user; only the user who placed the order sees it
+     * @return the status, or null if unknown
+     */
+    public OrderStatus getStatus(String key, Principal principal) {
+        OrderStatus status = orderPipeline.getStatus(key, principal.getName());
+        if (status == null) {
+            Optional<Long> placed = findOrder(key, principal.getName());
+            if (placed.isPresent()) {
+                status = new OrderStatus(OrderStatus.PLACED, placed.get(), List.of());
+            } else if (cartSession.settle(key, false)) {
+                return new OrderStatus(OrderStatus.FAILED, null, List.of(LOST));
+            } else {
+                return null;
+            }
+        }
+        if (!OrderStatus.QUEUED.equals(status.getState())) {
+            cartSession.settle(key, OrderStatus.PLACED.equals(status.getState()));
+        }
+        return status;
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically forgets completed keys older than the time-to-live; the orders
+     * table still answers repeats for them.
+     */
+    @Scheduled(fixedDelayString = "${checkout.idempotency.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - ttlSeconds * 1000;
+        attempts.values().removeIf(attempt -> attempt.result().isDone() && attempt.startedAt() < cutoff);
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Places the order, treating a unique key violation as a repeat that raced past the
+     * in-memory check (e.g. submitted to another instance).
+     *
+     * @param order     the order to place
+     * @param principal the authenticated user
+     * @param key       the order's idempotency key
+     * @return the id of the placed order, or of the order that already holds the key
+     */
+    private long place(Order order, Principal principal, String key) {
+        try {
+            orderService.addOrder(order, principal);
+            return order.getId();
+        } catch (DataIntegrityViolationException e) {
+            return findOrder(key, principal.getName()).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Compares a prepared order with the stock of its products as last loaded.
+     *
+     * @param command the prepared order
+     * @throws InsufficientStockException if any line asks for more units than are in stock
+     */
+    private void checkStock(OrderCommand command) {
+        Map<Long, Integer> inventories = new HashMap<>();
+        for (OrderItem item : command.getOrder().getOrderItems()) {
+            inventories.put(item.getProduct().getId(), item.getProduct().getInventory());
+        }
+        List<String> failedLines = new ArrayList<>();
+        command.getQuantities().forEach((productId, quantity) -> {
+            int inventory = inventories.get(productId);
+            if (inventory < quantity) {
+                failedLines.add(command.getNames().get(productId)
+                        + ": only " + inventory + " left (requested " + quantity + ")");
+            }
+        });
+        if (!failedLines.isEmpty()) {
+            throw new InsufficientStockException(failedLines);
+        }
+    }
+
+    /**
+     * Finds the order a user already placed with the given key.
+     *
+     * @param key   the idempotency key
+     * @param email the email of the user
+     * @return the order id, or empty if the user has no order holding the key
+     */
+    private Optional<Long> findOrder(String key, String email) {
+        return orderRepository.findIdByIdempotencyKeyAndEmail(key, email);
+    }
+
+    /**
+     * Waits for an earlier submit with the same key and returns its result.
+     *
+     * @param earlier the earlier submit
+     * @return the id of the order it placed
+     * @throws ResponseStatusException with status CONFLICT if it is still running after the wait
+     */
+    private long await(Attempt earlier) {
+        try {
+            return earlier.result().get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Checkout is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Checkout was interrupted");
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.example.ex4.repo.*;
 import com.example.ex4.session.CartSession;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -57,6 +59,7 @@ public class OrderItemService {
         OrderItem item = new OrderItem();
         item.setProduct(cartItem.getProduct());
         item.setQuantity(cartItem.getQuantity());
+        item.setUnitPrice(cartItem.getProduct().getPrice());
         item.setOrder(order); // set the parent reference!
 
         return item;
@@ -70,4 +73,15 @@ public class OrderItemService {
     public List<OrderItem> getAllOrderItems() {
         return orderItemRepository.findAll();
     }
+
+    /**
+     * Retrieves one page of order items, newest first.
+     *
+     * @param page the zero-based page number
+     * @param size the number of order items per page
+     * @return the requested page of order items
+     */
+    public Page<OrderItem> getOrderItemsPage(int page, int size) {
+        return orderItemRepository.findAllByOrderByIdDesc(PageRequest.of(page, size));
+    }
 }
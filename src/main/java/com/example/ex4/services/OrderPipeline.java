@@ -0,0 +1,355 @@
+package com.example.ex4.services;
+
+import com.example.ex4.components.InventoryLedger;
+import com.example.ex4.dto.OrderCommand;
+import com.example.ex4.dto.OrderStatus;
+import com.example.ex4.exceptions.InsufficientStockException;
+import com.example.ex4.repo.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous order pipeline for bursts of checkouts.
+ * <p>
+ * When enabled ({@code checkout.async.enabled}), the payment request only prepares
+ * the order and puts it on a bounded in-process queue, so it returns without waiting
+ * for the database. A small pool of worker threads drains the queue and places up to
+ * {@code checkout.async.batch-size} orders per transaction, which turns a spike of
+ * requests into a steady stream of batched inserts. Each order is tracked by the
+ * idempotency key of its payment form, and the shopper polls its status.
+ * </p>
+ * <p>
+ * An order that is out of stock fails on its own without affecting the rest of its
+ * batch. If the batch transaction itself fails, its orders are placed again one per
+ * transaction, so only the order that caused the failure is reported as failed.
+ * </p>
+ * <p>
+ * The queue and the statuses live in this instance's memory only. Orders still
+ * queued are placed when the application shuts down, for up to 30 seconds; orders
+ * lost to a crash or to that limit are never placed, and the shopper's cart is put
+ * back when they next ask for the status (see {@link CheckoutService#getStatus}).
+ * </p>
+ */
+@Service
+public class OrderPipeline {
+
+    /** Whether checkout goes through the queue. */
+    @Value("${checkout.async.enabled:false}")
+    private boolean enabled;
+
+    /** Maximum number of orders waiting in the queue. */
+    @Value("${checkout.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /** Number of worker threads draining the queue. */
+    @Value("${checkout.async.workers:2}")
+    private int workerCount;
+
+    /** Maximum number of orders placed in one transaction. */
+    @Value("${checkout.async.batch-size:50}")
+    private int batchSize;
+
+    /** Seconds a finished status stays available for polling. */
+    @Value("${checkout.async.status-ttl-seconds:3600}")
+    private long statusTtlSeconds;
+
+    /** Message shown for orders that could not be committed. */
+    private static final String PLACE_FAILED = "Your order could not be placed, please try again";
+
+    /** Service that takes the stock and saves each order. */
+    @Autowired
+    private OrderService orderService;
+
+    /** Runs each batch in its own transaction. */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Ledger whose reservations are given back for orders that failed. */
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    /** Orders waiting for a worker. */
+    private BlockingQueue<OrderCommand> queue;
+
+    /** Runs the workers draining the queue. */
+    private ExecutorService workers;
+
+    /** Cleared on shutdown; workers then finish the queue and exit. */
+    private volatile boolean running;
+
+    /** Order statuses keyed by user and idempotency key, see {@link #scoped(String, String)}. */
+    private final Map<String, Tracked> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * A status together with its owner.
+     *
+     * @param status    the order status
+     * @param email     email of the user who placed the order
+     * @param updatedAt time in milliseconds the status was last changed
+     */
+    private record Tracked(OrderStatus status, String email, long updatedAt) {
+    }
+
+    /**
+     * Creates the queue and starts the workers.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount,
+                runnable -> new Thread(runnable, "order-pipeline-" + threadCount.incrementAndGet()));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Lets the workers place the orders still queued, then waits up to 30 seconds for
+     * them to exit before interrupting them.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Returns whether checkout goes through the queue.
+     *
+     * @return true if the asynchronous pipeline is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Claims an idempotency key for a new submit. A key whose order failed may be claimed again.
+     *
+     * @param key   the idempotency key
+     * @param email email of the user submitting
+     * @return true if the caller should place the order, false if the key is already taken
+     */
+    public boolean claim(String key, String email) {
+        Tracked queued = tracked(OrderStatus.QUEUED, null, List.of(), email);
+        String scopedKey = scoped(key, email);
+        Tracked existing = statuses.putIfAbsent(scopedKey, queued);
+        return existing == null
+                || (OrderStatus.FAILED.equals(existing.status().getState())
+                && statuses.replace(scopedKey, existing, queued));
+    }
+
+    /**
+     * Forgets a claimed key whose submit never reached the queue.
+     *
+     * @param key   the idempotency key
+     * @param email email of the user who claimed it
+     */
+    public void forget(String key, String email) {
+        statuses.remove(scoped(key, email));
+    }
+
+    /**
+     * Records that the order of a claimed key was placed outside the queue.
+     *
+     * @param key     the idempotency key
+     * @param email   email of the user who placed the order
+     * @param orderId the id of the placed order
+     */
+    public void recordPlaced(String key, String email, long orderId) {
+        statuses.put(scoped(key, email), tracked(OrderStatus.PLACED, orderId, List.of(), email));
+    }
+
+    /**
+     * Puts a prepared order on the queue.
+     *
+     * @param command the prepared order, whose idempotency key was claimed
+     * @return true if queued, false if the queue is full
+     */
+    public boolean enqueue(OrderCommand command) {
+        return queue.offer(command);
+    }
+
+    /**
+     * Returns the status of an order, visible to the user who placed it only.
+     *
+     * @param key   the idempotency key
+     * @param email email of the user asking
+     * @return the status, or null if the user has no order with the key
+     */
+    public OrderStatus getStatus(String key, String email) {
+        Tracked tracked = statuses.get(scoped(key, email));
+        return tracked == null ? null : tracked.status();
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically forgets finished statuses older than the time-to-live.
+     */
+    @Scheduled(fixedDelayString = "${checkout.async.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - statusTtlSeconds * 1000;
+        statuses.values().removeIf(tracked -> !OrderStatus.QUEUED.equals(tracked.status().getState())
+                && tracked.updatedAt() < cutoff);
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Worker loop: waits for an order, adds whatever else is queued up to the batch
+     * size, and places the batch.
+     */
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            try {
+                OrderCommand first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<OrderCommand> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Places a batch of orders in one transaction and records their statuses. If the
+     * transaction fails, each order is placed again in a transaction of its own.
+     *
+     * @param batch the orders to place
+     */
+    private void process(List<OrderCommand> batch) {
+        Map<OrderCommand, List<String>> failed = new LinkedHashMap<>();
+        List<OrderCommand> placed = new ArrayList<>();
+        try {
+            placeAll(batch, placed, failed);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                failed.put(batch.get(0), List.of(PLACE_FAILED));
+            } else {
+                for (OrderCommand command : batch) {
+                    forgetIds(command.getOrder());
+                    try {
+                        placeAll(List.of(command), placed, failed);
+                    } catch (RuntimeException single) {
+                        failed.put(command, List.of(PLACE_FAILED));
+                    }
+                }
+            }
+        }
+        for (OrderCommand command : placed) {
+            recordPlaced(command.getOrder().getIdempotencyKey(), command.getEmail(), command.getOrder().getId());
+        }
+        failed.forEach((command, messages) -> {
+            inventoryLedger.releaseAll(command.getReservationId());
+            statuses.put(scoped(command.getOrder().getIdempotencyKey(), command.getEmail()),
+                    tracked(OrderStatus.FAILED, null, messages, command.getEmail()));
+        });
+    }
+
+    /**
+     * Places orders in one transaction. Orders are added to the results only once the
+     * transaction committed.
+     *
+     * @param commands the orders to place
+     * @param placed   receives the orders placed
+     * @param failed   receives the orders out of stock, with their failure messages
+     * @throws RuntimeException if the transaction fails; nothing is placed then
+     */
+    private void placeAll(List<OrderCommand> commands, List<OrderCommand> placed,
+                          Map<OrderCommand, List<String>> failed) {
+        List<OrderCommand> saved = new ArrayList<>();
+        Map<OrderCommand, List<String>> shortOfStock = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (OrderCommand command : commands) {
+                try {
+                    orderService.placeOrder(command);
+                    saved.add(command);
+                } catch (InsufficientStockException e) {
+                    shortOfStock.put(command, e.getFailedLines());
+                }
+            }
+        });
+        placed.addAll(saved);
+        failed.putAll(shortOfStock);
+    }
+
+    /**
+     * Clears the ids an order and its items were given in a transaction that rolled
+     * back, so placing it again inserts them as new rows.
+     *
+     * @param order the order to place again
+     */
+    private static void forgetIds(Order order) {
+        order.setId(0);
+        order.getOrderItems().forEach(item -> item.setId(0));
+    }
+
+    /**
+     * Returns the key a status is stored under. Idempotency keys are scoped to the user,
+     * so a key sent by another account does not collide with this user's order.
+     *
+     * @param key   the idempotency key
+     * @param email email of the user who sent it
+     * @return the key of the status
+     */
+    private static String scoped(String key, String email) {
+        return email + "\n" + key;
+    }
+
+    /**
+     * Creates a tracked status stamped with the current time.
+     *
+     * @param state    the status state
+     * @param orderId  the placed order id, if any
+     * @param messages failure messages, if any
+     * @param email    email of the user who placed the order
+     * @return the tracked status
+     */
+    private Tracked tracked(String state, Long orderId, List<String> messages, String email) {
+        return new Tracked(new OrderStatus(state, orderId, messages), email, System.currentTimeMillis());
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.ex4.services;
 
+import com.example.ex4.components.InventoryLedger;
+import com.example.ex4.components.SalesCounters;
+import com.example.ex4.dto.OrderCommand;
+import com.example.ex4.dto.ProductSalesDto;
+import com.example.ex4.exceptions.InsufficientStockException;
 import com.example.ex4.repo.*;
 import com.example.ex4.session.CartSession;
 import jakarta.annotation.Resource;
@@ -7,8 +12,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service class for managing {@link Order} entities and related operations.
@@ -51,6 +59,25 @@ public class OrderService {
     @Resource(name = "cartSessionBean")
     private CartSession cartSession;
 
+    /**
+     * Running sales totals, read by the dashboard queries.
+     */
+    @Autowired
+    private SalesCounters salesCounters;
+
+    /**
+     * Outbox that receives an event for every placed order, in the order's transaction.
+     */
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    /**
+     * In-memory stock ledger; when enabled, checkout sells the cart's reservation instead
+     * of decrementing the product rows.
+     */
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
     /**
      * Associates the given order with a {@link UserAccount} retrieved by email.
      *
@@ -67,38 +94,76 @@ public class OrderService {
     //=====================================
 
     /**
-     * Populates the given order with order items based on the current cart session.
+     * Builds an order from the current cart session without touching the stock.
      * <p>
-     * For each item in the cart, updates the product stock quantity and
-     * creates a corresponding {@link OrderItem} associated with the order.
+     * Links the order with the authenticated user and creates an {@link OrderItem}
+     * for each item in the cart. Lines of the same product are summed so that
+     * {@link #placeOrder(OrderCommand)} decrements each product once. Must run on
+     * the request thread, since it reads the session's cart.
      * </p>
      *
-     * @param order the order to populate with items
+     * @param order     the order bound from the payment form
+     * @param principal the security principal representing the authenticated user
+     * @return the command that places the order
      */
-    public void setOrderItems(Order order) {
+    public OrderCommand prepareOrder(Order order, Principal principal) {
+        setUserAccount(order, principal.getName());
+        Map<Long, Integer> quantities = new HashMap<>();
+        Map<Long, String> names = new HashMap<>();
         List<OrderItem> orderItems = new ArrayList<>();
         cartSession.getCartItems().forEach(cartItem -> {
-            productService.updateProductQuantity(cartItem.getQuantity(), cartItem.getProduct());
+            Product product = cartItem.getProduct();
+            quantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+            names.put(product.getId(), product.getProductName());
             orderItems.add(orderItemService.createOrderItem(cartItem, order));
         });
         order.setOrderItems(orderItems);
+        return new OrderCommand(order, quantities, names, cartSession.getReservationId(), principal.getName());
+    }
+
+    /**
+     * Takes a prepared order's units out of stock and saves it, inside the caller's transaction.
+     * <p>
+     * When the inventory ledger is enabled the cart's reservation is sold, and the
+     * product rows are updated later by the ledger's write-back; otherwise every product
+     * is decremented with a conditional update. If any line is out of stock, nothing is
+     * changed and the exception is thrown, so several orders can share one transaction.
+     * An {@link OutboxEvent} saved with the order hands it to the outbox dispatcher,
+     * which updates the sales totals and other listeners once the transaction commits.
+     * </p>
+     *
+     * @param command the prepared order
+     * @throws InsufficientStockException if any product has fewer units left than requested
+     */
+    public void placeOrder(OrderCommand command) {
+        Order order = command.getOrder();
+        if (inventoryLedger.isEnabled()) {
+            inventoryLedger.commit(command.getReservationId(), command.getQuantities(), command.getNames());
+            order.setInventoryApplied(false);
+        } else {
+            productService.decrementStock(command.getQuantities(), command.getNames());
+            order.setInventoryApplied(true);
+        }
+        orderRepository.save(order);
+        outboxEventRepository.save(new OutboxEvent(OutboxEvent.ORDER_PLACED, order.getId()));
     }
 
     /**
      * Creates and saves a new order transactionally,
      * linking the order with the authenticated user and cart items.
      * <p>
-     * Clears the cart session upon successful save.
+     * Clears the cart session upon successful save; the order reaches the
+     * running sales totals through the outbox. If any cart
+     * line is out of stock nothing is saved and the cart is kept.
      * </p>
      *
      * @param order     the order entity to add
      * @param principal the security principal representing the authenticated user
+     * @throws InsufficientStockException if any product has fewer units left than requested
      */
     @Transactional
     public void addOrder(Order order, Principal principal) {
-        setUserAccount(order, principal.getName());
-        setOrderItems(order);
-        orderRepository.save(order);
+        placeOrder(prepareOrder(order, principal));
         cartSession.clearCart();
     }
 
@@ -113,26 +178,60 @@ public class OrderService {
     }
 
     /**
-     * Returns the total number of orders in the system.
+     * Returns the total number of orders in the system from the running sales totals.
      *
      * @return total count of all orders
      */
-    public int getTotalOrdersAmount() {
-        return orderRepository.findAll().size();
+    public long getTotalOrdersAmount() {
+        return salesCounters.getOrderCount();
     }
 
     /**
-     * Calculates the total revenue generated from all orders.
+     * Returns the total revenue generated from all orders from the running sales totals.
      *
      * @return sum of total payments for all orders
      */
     public double getTotalRevenue() {
-        double totalRevenue = 0;
-        List<Order> orders = orderRepository.findAll();
-        for (Order order : orders) {
-            totalRevenue += order.getTotalPayment();
+        return salesCounters.getRevenue();
+    }
+
+    /**
+     * Returns the best-selling products with their sold units, most units first.
+     *
+     * @param limit the maximum number of products to return
+     * @return list of product sales entries
+     */
+    public List<ProductSalesDto> getTopSellingProducts(int limit) {
+        List<Long> productIds = salesCounters.getTopProductIds(limit);
+        Map<Long, Product> products = productService.getProductsByIds(productIds);
+        List<ProductSalesDto> result = new ArrayList<>();
+        for (Long productId : productIds) {
+            Product product = products.get(productId);
+            if (product != null) {
+                result.add(new ProductSalesDto(productId, product.getProductName(),
+                        salesCounters.getUnitsSold(productId)));
+            }
         }
-        return totalRevenue;
+        return result;
+    }
+
+    /**
+     * Returns the revenue of every category from the running sales totals.
+     *
+     * @return a map of category name to revenue
+     */
+    public Map<String, Double> getRevenueByCategory() {
+        return salesCounters.getRevenueByCategory();
+    }
+
+    /**
+     * Returns the daily revenue of the last {@code days} days from the running sales totals.
+     *
+     * @param days the number of days to include, today included
+     * @return a map of day to revenue
+     */
+    public Map<LocalDate, Double> getRevenueByDay(int days) {
+        return salesCounters.getRevenueByDay(LocalDate.now().minusDays(days - 1L));
     }
 
 }
\ No newline at end of file
@@ -1,17 +1,45 @@
 package com.example.ex4.services;
 
+import com.example.ex4.components.InventoryLedger;
+import com.example.ex4.components.KeysetCursorCodec;
+import com.example.ex4.components.ProductCatalogCache;
+import com.example.ex4.components.ProductFacetIndex;
+import com.example.ex4.components.ProductSearchIndex;
+import com.example.ex4.dto.ProductDto;
+import com.example.ex4.dto.ProductFilter;
+import com.example.ex4.dto.ProductFilterResult;
+import com.example.ex4.dto.SearchMode;
+import com.example.ex4.dto.ProductPage;
+import com.example.ex4.dto.ProductSort;
+import com.example.ex4.exceptions.InsufficientStockException;
+import com.example.ex4.repo.CartItemRepository;
 import com.example.ex4.repo.Category;
 import com.example.ex4.repo.Product;
 import com.example.ex4.repo.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service class for managing {@link Product} entities.
@@ -29,6 +57,12 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    /**
+     * Repository used to delete the saved cart lines of a deleted product.
+     */
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
     /**
      * Service responsible for saving and deleting product images.
      */
@@ -41,23 +75,92 @@ public class ProductService {
     @Autowired
     private CategoryService categoryService;
 
+    /**
+     * Read-through cache in front of the product repository.
+     */
+    @Autowired
+    private ProductCatalogCache catalogCache;
+
+    /**
+     * Codec for the opaque keyset cursors of paginated listings.
+     */
+    @Autowired
+    private KeysetCursorCodec cursorCodec;
+
+    /**
+     * In-memory index answering the live search without querying the database.
+     */
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    /**
+     * In-memory facet bitsets answering the product filter without querying the database.
+     */
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    /**
+     * In-memory stock ledger told about stock changes made from the admin panel.
+     */
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    /**
+     * Runs the edit of a product in its own transaction.
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * A product edited in the admin panel and the values it had before.
+     *
+     * @param product      the edited product
+     * @param oldInventory the stock before the edit
+     * @param oldImageUrl  the image URL before the edit
+     */
+    private record Edit(Product product, int oldInventory, String oldImageUrl) {
+    }
+
     //========================================
     //            Public Methods
     //========================================
 
     /**
      * Adds a new product, storing its image and associating it with the correct category.
+     * <p>
+     * The product is saved on the storage executor once its image was committed, so
+     * the calling request thread does not wait for the image to be written.
+     * </p>
      *
      * @param product the product entity populated from the form model
      * @param file    the multipart image file to save
-     * @throws IOException if an error occurs during image storage
+     * @return a future completed once the product is saved, or failed if the image was rejected
+     * @throws IOException if the image cannot be staged
      */
-    public void addProduct(@ModelAttribute Product product, MultipartFile file) throws IOException {
-        storageService.saveImage(file);
-        product.setImageUrl(file.getOriginalFilename());
+    public CompletableFuture<Void> addProduct(@ModelAttribute Product product, MultipartFile file) throws IOException {
         Category category = categoryService.getCategoryById(product.getCategoryId());
         product.setCategory(category);
+        return storageService.saveImage(file).thenAccept(imageUrl -> {
+            try {
+                product.setImageUrl(imageUrl);
+                saveNewProduct(product);
+            } finally {
+                storageService.releaseImage(imageUrl);
+            }
+        });
+    }
+
+    /**
+     * Saves a product whose image is stored and updates the caches and indexes.
+     *
+     * @param product the product to save
+     */
+    private void saveNewProduct(Product product) {
         productRepository.save(product);
+        catalogCache.invalidateProduct(product.getId());
+        searchIndex.put(product.getId(), product.getProductName());
+        facetIndex.put(product);
+        inventoryLedger.track(product.getId(), product.getInventory());
     }
 
     /**
@@ -65,12 +168,11 @@ public class ProductService {
      *
      * @param product the product entity populated from the form model
      * @param id      the identifier of the product to edit
-     * @throws IOException if an error occurs during image storage or deletion
+     * @return a future completed once the product is saved; a new image is committed in the background
+     * @throws IOException if an error occurs during image staging
      */
-    public void editProduct(@ModelAttribute Product product, long id) throws IOException {
-        product.setId(id);
+    public CompletableFuture<Void> editProduct(@ModelAttribute Product product, long id) throws IOException {
         MultipartFile file = product.getFile();
-        Product existing = getProductById(id);
 
         // Update category association
         Category category = categoryService.getCategoryById(product.getCategoryId());
@@ -78,19 +180,63 @@ public class ProductService {
 
         if (file.isEmpty()) {
             // Preserve existing image if no new file provided
-            product.setImageUrl(existing.getImageUrl());
-            productRepository.save(product);
-        } else {
-            // Delete old image and save new one
-            if (existing.getImageUrl() != null) {
-                storageService.deleteImage(existing.getImageUrl());
-            }
-            addProduct(product, file);
+            updateProduct(id, product, null);
+            return CompletableFuture.completedFuture(null);
         }
+        // Save new image, then delete the old one unless another product still uses it
+        return storageService.saveImage(file).thenAccept(imageUrl -> {
+            String oldImageUrl;
+            try {
+                oldImageUrl = updateProduct(id, product, imageUrl);
+            } finally {
+                storageService.releaseImage(imageUrl);
+            }
+            try {
+                storageService.deleteImage(oldImageUrl);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes the fields edited in the admin panel to a product's row, read fresh and
+     * locked so the review aggregates written by concurrent reviews are kept, then
+     * updates the caches, indexes and stock ledger.
+     *
+     * @param id       the identifier of the product to edit
+     * @param form     the product populated from the form, with its category resolved
+     * @param imageUrl the new image, or null to keep the current one
+     * @return the image URL the product had before the edit
+     * @throws ResponseStatusException if no product is found with the given id
+     */
+    private String updateProduct(long id, Product form, String imageUrl) {
+        Edit edit = transactionTemplate.execute(status -> {
+            Product product = productRepository.findForUpdateById(id)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+            Edit before = new Edit(product, product.getInventory(), product.getImageUrl());
+            product.setProductName(form.getProductName());
+            product.setProductDescription(form.getProductDescription());
+            product.setPrice(form.getPrice());
+            product.setInventory(form.getInventory());
+            product.setCategory(form.getCategory());
+            if (imageUrl != null) {
+                product.setImageUrl(imageUrl);
+            }
+            return before;
+        });
+        Product product = edit.product();
+        // Move the ledger's free units by the same amount the stock changed
+        inventoryLedger.restock(id, edit.oldInventory(), product.getInventory());
+        catalogCache.invalidateProduct(id);
+        searchIndex.put(id, product.getProductName());
+        facetIndex.put(product);
+        return edit.oldImageUrl();
     }
 
     /**
-     * Deletes the specified product and its associated image file.
+     * Deletes the specified product, its saved cart lines and its image file
+     * unless another product still uses it.
      *
      * @param id the identifier of the product to delete
      * @throws IOException if an error occurs during image deletion
@@ -98,76 +244,247 @@ public class ProductService {
     public void deleteProduct(@ModelAttribute long id) throws IOException {
         Product product = getProductById(id);
         String imageUrl = product.getImageUrl();
+        cartItemRepository.deleteByProductId(id);
         productRepository.deleteById(id);
+        catalogCache.invalidateProduct(id);
+        searchIndex.remove(id);
+        facetIndex.remove(id);
+        inventoryLedger.remove(id);
         storageService.deleteImage(imageUrl);
     }
 
     /**
-     * Retrieves all products in the system.
+     * Retrieves all products in the system, served from the catalog cache when possible.
      *
      * @return a list of all products
      */
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return catalogCache.getListing("all", productRepository::findAllWithCategory);
     }
 
     /**
-     * Retrieves a product by its identifier.
+     * Retrieves a product by its identifier, served from the catalog cache when possible.
      *
      * @param id the identifier of the product
      * @return the matching product
      * @throws ResponseStatusException if no product is found with the given id
      */
     public Product getProductById(Long id) {
-        return productRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+        return catalogCache.getProduct(id, () -> productRepository.findWithCategoryById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found")));
+    }
+
+    /**
+     * Retrieves several products by identifier, answering cached ones from the catalog cache
+     * and loading all the remaining ones with a single query.
+     *
+     * @param ids the identifiers of the products to retrieve
+     * @return a map of product id to product; ids of products that no longer exist are absent
+     */
+    public Map<Long, Product> getProductsByIds(Collection<Long> ids) {
+        Map<Long, Product> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Product cached = catalogCache.peekProduct(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Product product : productRepository.findWithCategoryByIdIn(missing)) {
+                catalogCache.putProduct(product);
+                result.put(product.getId(), product);
+            }
+        }
+        return result;
     }
 
     /**
-     * Retrieves products belonging to the specified category name.
+     * Retrieves products belonging to the specified category name,
+     * served from the catalog cache when possible.
      *
      * @param categoryString the name of the category to filter by
      * @return a list of products matching the category
      */
     public List<Product> getProductsByCategory(String categoryString) {
-        Category category = categoryService.getCategoryByName(categoryString);
-        return productRepository.findByCategory(category);
+        return catalogCache.getListing("category:" + categoryString, () -> {
+            Category category = categoryService.getCategoryByName(categoryString);
+            return productRepository.findByCategory(category);
+        });
     }
 
     /**
-     * Checks if the requested quantity is available and reduces the inventory accordingly.
+     * Retrieves one keyset-paginated page of products, optionally limited to a category.
+     * <p>
+     * Each page is located by the sort key of the last product on the previous page,
+     * so the query cost stays the same however deep the shopper pages.
+     * Pages are served from the catalog cache when possible.
+     * </p>
      *
-     * @param quantity the amount to check and deduct
-     * @param product  the product entity whose inventory to adjust
-     * @return true if inventory was sufficient and reduced, false otherwise
+     * @param categoryName the category to list, or null for all products
+     * @param sort         the sort order
+     * @param cursor       the cursor returned with the previous page, or null for the first page
+     * @param size         the maximum number of products on the page
+     * @return the page of products with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    public boolean checkAndReduceQuantity(int quantity, Product product) {
-        if (product.getInventory() <= quantity) {
-            return false;
+    public ProductPage getProductsPage(String categoryName, ProductSort sort, String cursor, int size) {
+        KeysetScrollPosition position = cursorCodec.decode(cursor);
+        String key = "page:" + categoryName + ":" + sort.getValue() + ":" + size + ":" + cursor;
+        List<Product> products = catalogCache.getListing(key, () -> {
+            Window<Product> window = categoryName == null
+                    ? productRepository.findBy(position, sort.getSort(), Limit.of(size + 1))
+                    : productRepository.findByCategory(categoryService.getCategoryByName(categoryName),
+                            position, sort.getSort(), Limit.of(size + 1));
+            return new ArrayList<>(window.getContent());
+        });
+
+        // One extra product is loaded to tell whether a next page exists
+        if (products.size() <= size) {
+            return new ProductPage(products, null, sort.getValue());
         }
-        product.setInventory(product.getInventory() - quantity);
-        return true;
+        List<Product> pageProducts = products.subList(0, size);
+        Product last = pageProducts.get(size - 1);
+        return new ProductPage(pageProducts, cursorCodec.encode(keysetOf(last, sort)), sort.getValue());
     }
 
     /**
-     * Reduces the product's inventory by the specified amount and saves the update.
+     * Builds the keyset position of a product for the given sort order.
      *
-     * @param quantity the amount to deduct from inventory
-     * @param product  the product entity to update
+     * @param product the last product of a page
+     * @param sort    the sort order of the page
+     * @return the keyset position after the product
      */
-    public void updateProductQuantity(int quantity, Product product) {
-        product.setInventory(product.getInventory() - quantity);
-        productRepository.save(product);
+    private KeysetScrollPosition keysetOf(Product product, ProductSort sort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        switch (sort) {
+            case PRICE, PRICE_DESC -> keys.put("price", product.getPrice());
+            case NAME -> keys.put("productName", product.getProductName());
+            case NEWEST -> { }
+        }
+        keys.put("id", product.getId());
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Returns the catalog cache counters.
+     *
+     * @return a map of counter name to value
+     */
+    public Map<String, Long> getCatalogCacheStats() {
+        return catalogCache.getStats();
+    }
+
+    /**
+     * Takes the requested units of several products out of stock.
+     * <p>
+     * Must run inside the checkout transaction. Each product is decremented with one
+     * conditional update, in ascending id order so concurrent checkouts lock rows in
+     * the same order and cannot deadlock. If any product has too few units left, the
+     * other decrements are put back and an exception naming every short line is thrown,
+     * so the stock is unchanged even if the transaction goes on to place other orders.
+     * Stock is only read back for lines that failed. Cached products are invalidated
+     * once the transaction commits, and their stock facet is refreshed with one query.
+     * </p>
+     *
+     * @param quantities units to take keyed by product id
+     * @param names      product names keyed by product id, used in failure messages
+     * @throws InsufficientStockException if any product has fewer units left than requested
+     */
+    public void decrementStock(Map<Long, Integer> quantities, Map<Long, String> names) {
+        List<String> failedLines = new ArrayList<>();
+        List<Long> decremented = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            long productId = line.getKey();
+            int quantity = line.getValue();
+            if (productRepository.decrementInventory(productId, quantity) == 1) {
+                decremented.add(productId);
+            } else {
+                Integer inventory = productRepository.findInventoryById(productId);
+                failedLines.add(inventory == null
+                        ? names.get(productId) + " is no longer available"
+                        : names.get(productId) + ": only " + inventory + " left (requested " + quantity + ")");
+            }
+        }
+        if (!failedLines.isEmpty()) {
+            decremented.forEach(productId ->
+                    productRepository.restoreInventory(productId, quantities.get(productId)));
+            throw new InsufficientStockException(failedLines);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                decremented.forEach(catalogCache::invalidateProduct);
+                for (Object[] row : productRepository.findInventoriesByIdIn(decremented)) {
+                    facetIndex.updateStock((Long) row[0], (Integer) row[1] > 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a new review's rating to the product's review aggregates.
+     * <p>
+     * Must run inside the transaction that saves the review. The cached product and its
+     * rating facet are refreshed once that transaction commits.
+     * </p>
+     *
+     * @param productId the identifier of the reviewed product
+     * @param rating    the rating of the new review (1–5)
+     */
+    public void recordReview(long productId, int rating) {
+        productRepository.addReviewRating(productId, rating);
+        double average = productRepository.findReviewsAverageById(productId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                catalogCache.invalidateProduct(productId);
+                facetIndex.updateRating(productId, average);
+            }
+        });
+    }
+
+    /**
+     * Filters products by category, price range, stock, and minimum average rating.
+     * <p>
+     * Matching and facet counting run on the in-memory facet index; only the products
+     * of the requested page are loaded, through the catalog cache.
+     * </p>
+     *
+     * @param filter the selected facet values and the page to return
+     * @return the page of matching products, newest first, with the total and facet counts
+     */
+    public ProductFilterResult filterProducts(ProductFilter filter) {
+        ProductFacetIndex.Selection selection = facetIndex.filter(filter);
+        Map<Long, Product> products = getProductsByIds(selection.productIds());
+        List<Product> page = new ArrayList<>();
+        for (Long id : selection.productIds()) {
+            Product product = products.get(id);
+            if (product != null) {
+                page.add(product);
+            }
+        }
+        ProductFilterResult result = selection.result();
+        result.setProducts(page);
+        return result;
     }
 
     /**
-     * Searches for products containing the given term in their name, returning up to five results.
+     * Searches for products matching the given term in their name, returning up to five results.
+     * <p>
+     * Answered from the in-memory search index: name prefix matches first, then word
+     * prefix matches, then other substring matches, then typo-tolerant matches by edit
+     * distance, each ordered by popularity.
+     * </p>
      *
      * @param searched the search term to filter product names
-     * @return list of matching products (max 5)
+     * @param mode     whether to return substring matches, fuzzy matches, or both
+     * @return list of matching products as id and name pairs (max 5)
      */
-    public List<Product> getAllSearchItems(String searched) {
-        return productRepository.findTop5ByProductNameContainingIgnoreCase(searched);
+    public List<ProductDto> getAllSearchItems(String searched, SearchMode mode) {
+        return searchIndex.search(searched, 5, mode);
     }
 
 }
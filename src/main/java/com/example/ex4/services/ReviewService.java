@@ -1,11 +1,24 @@
 package com.example.ex4.services;
 
+import com.example.ex4.components.KeysetCursorCodec;
+import com.example.ex4.dto.ReviewDto;
+import com.example.ex4.dto.ReviewPage;
+import com.example.ex4.dto.ReviewSort;
 import com.example.ex4.repo.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service class for managing {@link Review} entities.
@@ -34,13 +47,29 @@ public class ReviewService {
     @Autowired
     private UserAccountService userAccountService;
 
+    /**
+     * Codec for the opaque keyset cursors of paginated reviews.
+     */
+    @Autowired
+    private KeysetCursorCodec cursorCodec;
+
+    /**
+     * Number of reviews shown per page on the product page.
+     */
+    @Value("${reviews.page-size:10}")
+    private int reviewsPageSize;
+
     /**
      * Adds a new review to the specified product by the authenticated user.
+     * <p>
+     * The review and the product's review aggregates are written in one transaction.
+     * </p>
      *
      * @param productId the identifier of the product being reviewed
      * @param review    the review entity containing rating and comments
      * @param principal the security principal representing the authenticated user
      */
+    @Transactional
     public void addReview(Long productId, Review review, Principal principal) {
         // Retrieve the product and user account
         Product product = productService.getProductById(productId);
@@ -52,16 +81,75 @@ public class ReviewService {
 
         // Persist review
         reviewRepo.save(review);
+        productService.recordReview(productId, review.getRating());
+    }
+
+    /**
+     * Retrieves the first page of reviews for a given product, newest first.
+     *
+     * @param productId the identifier of the product
+     * @return the newest reviews of the product, at most one page
+     */
+    public List<ReviewDto> getReviewsForProduct(Long productId) {
+        return getReviewsPage(productId, ReviewSort.NEWEST, null, reviewsPageSize).getReviews();
     }
 
     /**
-     * Retrieves all reviews for a given product.
+     * Retrieves one keyset-paginated page of a product's reviews.
+     * <p>
+     * Each page is located by the sort key of the last review on the previous page,
+     * so loading a page costs the same however many reviews the product has.
+     * </p>
      *
      * @param productId the identifier of the product
-     * @return list of reviews associated with the product
+     * @param sort      the sort order
+     * @param cursor    the cursor returned with the previous page, or null for the first page
+     * @param size      the maximum number of reviews on the page
+     * @return the page of reviews with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ReviewPage getReviewsPage(Long productId, ReviewSort sort, String cursor, int size) {
+        KeysetScrollPosition position = cursorCodec.decode(cursor);
+        Window<Review> window = reviewRepo.findByProductId(productId, position, sort.getSort(), Limit.of(size + 1));
+
+        // One extra review is loaded to tell whether a next page exists
+        List<Review> loaded = window.getContent();
+        List<ReviewDto> reviews = new ArrayList<>();
+        for (int i = 0; i < loaded.size() && i < size; i++) {
+            Review review = loaded.get(i);
+            reviews.add(new ReviewDto(review.getId(), review.getUserAccount().getUsername(), review.getCreatedAt(),
+                    review.getRating(), review.getCommentTitle(), review.getComment()));
+        }
+        String nextCursor = loaded.size() > size
+                ? cursorCodec.encode(keysetOf(loaded.get(size - 1), sort))
+                : null;
+        return new ReviewPage(reviews, nextCursor, sort.getValue());
+    }
+
+    /**
+     * Returns the number of reviews shown per page.
+     *
+     * @return the page size
+     */
+    public int getReviewsPageSize() {
+        return reviewsPageSize;
+    }
+
+    /**
+     * Builds the keyset position of a review for the given sort order.
+     *
+     * @param review the last review of a page
+     * @param sort   the sort order of the page
+     * @return the keyset position after the review
      */
-    public List<Review> getReviewsForProduct(Long productId) {
-        return reviewRepo.findByProductId(productId);
+    private KeysetScrollPosition keysetOf(Review review, ReviewSort sort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        switch (sort) {
+            case NEWEST -> keys.put("createdAt", review.getCreatedAt());
+            case HIGHEST, LOWEST -> keys.put("rating", review.getRating());
+        }
+        keys.put("id", review.getId());
+        return ScrollPosition.forward(keys);
     }
 
 }
@@ -1,56 +1,704 @@
 package com.example.ex4.services;
 
-import org.springframework.core.io.UrlResource;
+import com.example.ex4.repo.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Service for storing product images under img-uploads/uploads.
+ * <p>
+ * Images are content-addressed: each file is named after the SHA-256 hash of its
+ * bytes and kept in a directory sharded by the first two pairs of hash digits
+ * ({@code ab/cd/abcd….png}), so identical uploads are stored once and a name never
+ * refers to different content. The stored name is what products keep as their
+ * image URL. A file is shared by every product that uses it and is only deleted
+ * once no product references it any more. Commits and deletions of the same name
+ * are serialized by a striped lock within this application instance; instances
+ * sharing one upload directory are not coordinated.
+ * </p>
+ * <p>
+ * Uploads are committed off the request thread (see {@link #saveImage(MultipartFile)}):
+ * they wait in img-uploads/staging until they were validated and forced to disk,
+ * and only then are moved into place with an atomic rename, so a crash never
+ * leaves a partly written image under a stored name. Leftovers in the staging
+ * directory are deleted on startup.
+ * </p>
+ * <p>
+ * After an image is stored, resized variants ({@code thumbnail}, {@code card} and
+ * {@code full}, see {@link #VARIANTS}) are written next to it by a background
+ * executor, e.g. {@code ab/cd/abcd…-card.jpg}; PNG images stay PNG, everything
+ * else becomes JPEG. Templates pick a variant with {@link #getVariant(String, String)},
+ * which falls back to the original while the variant is not ready, when the original
+ * is already smaller than the variant, or when the format cannot be decoded (e.g.
+ * WebP). Variants missing for images already on disk are generated on startup.
+ * </p>
+ */
 @Service
 public class StorageService {
 
-    Path uploadDir = Paths.get(System.getProperty("user.dir"),"img-uploads", "uploads");
+    /**
+     * Directory holding the uploaded images.
+     */
+    Path uploadDir = Paths.get(System.getProperty("user.dir"), "img-uploads", "uploads");
 
-    public void saveImage(MultipartFile file) throws IOException {
+    /**
+     * Directory holding uploads that are not committed yet.
+     */
+    Path stagingDir = Paths.get(System.getProperty("user.dir"), "img-uploads", "staging");
 
-        System.out.println("Directory - " + System.getProperty("user.dir"));
+    /**
+     * Resized variants keyed by name, with the longest side in pixels each is scaled to.
+     */
+    public static final Map<String, Integer> VARIANTS = variants();
+
+    /** Matches stored names derived from a content hash, with an optional variant suffix. */
+    private static final Pattern CONTENT_ADDRESSED =
+            Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(-[a-z]+)?(\\.[a-z0-9]{1,5})?");
+
+    /** JPEG quality of the variants, between 0 and 1. */
+    private static final float JPEG_QUALITY = 0.82f;
+
+    /** Largest accepted upload in bytes. */
+    @Value("${images.upload.max-bytes:2097152}")
+    private long maxUploadBytes;
+
+    /** Largest accepted width or height of an upload in pixels. */
+    @Value("${images.upload.max-dimension:6000}")
+    private int maxDimension;
+
+    /** Number of threads committing uploads. */
+    @Value("${images.upload.threads:2}")
+    private int uploadThreads;
+
+    /** Uploads waiting to be committed before the request threads commit them themselves. */
+    @Value("${images.upload.queue-capacity:100}")
+    private int uploadQueueCapacity;
+
+    /** Number of threads generating variants. */
+    @Value("${images.variants.threads:1}")
+    private int variantThreads;
+
+    /**
+     * Repository used to count the products that still reference an image.
+     */
+    @Autowired
+    private ProductRepository productRepository;
+
+    /** Number of lock stripes guarding commits and deletions. */
+    private static final int LOCK_STRIPES = 64;
+
+    /** Locks serializing the commit and deletion of the same stored name. */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /** Committed images whose product is not saved yet, with the number of pending saves. */
+    private final Map<String, Integer> pins = new ConcurrentHashMap<>();
+
+    /** Commits uploads off the request thread. */
+    private ExecutorService uploadExecutor;
+
+    /** Generates variants off the request thread. */
+    private ExecutorService variantExecutor;
+
+    /**
+     * Stored name to link to, keyed by variant name: the variant itself, or the original
+     * while the variant does not exist. Lets templates skip the disk for every tile.
+     */
+    private final Map<String, String> variantLinks = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the executors, deletes uploads left in the staging directory and queues
+     * the variants missing for stored images.
+     *
+     * @throws IOException if the upload or staging directory cannot be read
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        AtomicInteger uploadThreadCount = new AtomicInteger();
+        uploadExecutor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(uploadQueueCapacity),
+                runnable -> new Thread(runnable, "image-uploads-" + uploadThreadCount.incrementAndGet()),
+                (task, executor) -> task.run());
+        if (Files.isDirectory(stagingDir)) {
+            try (Stream<Path> files = Files.list(stagingDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        variantExecutor = Executors.newFixedThreadPool(variantThreads,
+                runnable -> new Thread(runnable, "image-variants-" + threadCount.incrementAndGet()));
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            files.filter(Files::isRegularFile)
+                    .map(path -> uploadDir.relativize(path).toString().replace('\\', '/'))
+                    .filter(StorageService::isOriginal)
+                    .forEach(this::scheduleVariants);
+        }
+    }
+
+    /**
+     * Lets the executors finish the queued uploads and variants.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        uploadExecutor.shutdown();
+        uploadExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        variantExecutor.shutdown();
+        variantExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    /**
+     * Stages an uploaded image and commits it in the background.
+     * <p>
+     * On the request thread the upload, which the servlet container has already
+     * spooled to disk as it arrived, is only moved (renamed when possible) into the
+     * staging directory. The storage executor then validates it, hashes it, forces
+     * it to disk and moves it atomically to its content-addressed name, unless an
+     * identical image is already stored. The returned future fails with an
+     * {@link IOException} if the image is rejected.
+     * </p>
+     * <p>
+     * A committed image stays pinned, so {@link #deleteImage(String)} keeps it even
+     * though no product references it yet, until the caller saved the product and
+     * called {@link #releaseImage(String)}.
+     * </p>
+     *
+     * @param file the uploaded image
+     * @return a future completed with the stored name, relative to the upload directory
+     * @throws IOException if the file is empty or cannot be staged
+     */
+    public CompletableFuture<String> saveImage(MultipartFile file) throws IOException {
 
         if (file.isEmpty()) {
             throw new IOException("Cannot store empty file.");
         }
 
-        Files.createDirectories(uploadDir);
+        Files.createDirectories(stagingDir);
+        Path staged = stagingDir.resolve(UUID.randomUUID() + ".part");
+        file.transferTo(staged.toFile());
+        CompletableFuture<String> stored = new CompletableFuture<>();
+        uploadExecutor.execute(() -> {
+            try {
+                stored.complete(commit(staged));
+            } catch (IOException | RuntimeException e) {
+                stored.completeExceptionally(e);
+            } finally {
+                try {
+                    Files.deleteIfExists(staged);
+                } catch (IOException e) {
+                    // removed from the staging directory on the next start
+                }
+            }
+        });
+        return stored;
+    }
+
+    /**
+     * Returns the file of a stored image.
+     *
+     * @param fileName the stored name
+     * @return the path of the image file
+     * @throws IOException if the image does not exist or the name points outside the upload directory
+     */
+    public Path getImage(String fileName) throws IOException {
+
+        Path filePath = resolve(fileName);
+
+        if (!Files.isRegularFile(filePath)) {
+            throw new NoSuchFileException(fileName);
+        }
+
+        return filePath;
+    }
+
+    /**
+     * Returns whether a stored name is content-addressed, i.e. its content can never change.
+     * Images uploaded before content addressing keep their original names.
+     *
+     * @param fileName the stored name
+     * @return true for hashed originals and their variants
+     */
+    public boolean isContentAddressed(String fileName) {
+        return CONTENT_ADDRESSED.matcher(fileName).matches();
+    }
 
-        String fileName = file.getOriginalFilename();
-        String totalPath = uploadDir.toString() + "/" + fileName;
-        File destination = new File(totalPath);
-        file.transferTo(destination);
+    /**
+     * Returns the stored name of a variant of an image, or of the original while
+     * the variant is not available.
+     *
+     * @param fileName the stored name of the original
+     * @param variant  the variant name, one of {@link #VARIANTS}
+     * @return the stored name to link to
+     */
+    public String getVariant(String fileName, String variant) {
+        if (fileName == null || !VARIANTS.containsKey(variant)) {
+            return fileName;
+        }
+        String variantName = variantName(fileName, variant);
+        return variantLinks.computeIfAbsent(variantName,
+                name -> Files.exists(uploadDir.resolve(name)) ? name : fileName);
     }
 
-    public UrlResource getImage(String fileName) throws IOException {
+    /**
+     * Deletes a stored image and its variants if no product references it any more.
+     * Must be called after the referencing product was removed or changed.
+     *
+     * @param fileName the stored name
+     * @return true if the file was deleted
+     * @throws IOException if the file cannot be deleted
+     */
+    public boolean deleteImage(String fileName) throws IOException {
 
+        if (fileName == null) {
+            return false;
+        }
+        synchronized (lockFor(fileName)) {
+            if (pins.containsKey(fileName) || productRepository.countByImageUrl(fileName) > 0) {
+                return false;
+            }
+            for (String variant : VARIANTS.keySet()) {
+                String variantName = variantName(fileName, variant);
+                variantLinks.remove(variantName);
+                Files.deleteIfExists(resolve(variantName));
+            }
+            return Files.deleteIfExists(resolve(fileName));
+        }
+    }
+
+    /**
+     * Unpins an image returned by {@link #saveImage(MultipartFile)} once the product
+     * referencing it was saved, or once saving it failed.
+     *
+     * @param fileName the stored name
+     */
+    public void releaseImage(String fileName) {
+        synchronized (lockFor(fileName)) {
+            unpin(fileName);
+        }
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Queues the generation of the variants of an image that do not exist yet.
+     *
+     * @param fileName the stored name of the original
+     */
+    private void scheduleVariants(String fileName) {
+        boolean missing = VARIANTS.keySet().stream()
+                .anyMatch(variant -> !Files.exists(uploadDir.resolve(variantName(fileName, variant))));
+        if (missing) {
+            variantExecutor.execute(() -> generateVariants(fileName));
+        }
+    }
+
+    /**
+     * Writes the missing variants of an image that are smaller than the original.
+     * Images that cannot be decoded are left without variants.
+     *
+     * @param fileName the stored name of the original
+     */
+    private void generateVariants(String fileName) {
+        try {
+            BufferedImage original = ImageIO.read(resolve(fileName).toFile());
+            if (original == null) {
+                return;
+            }
+            boolean png = fileName.endsWith(".png");
+            for (Map.Entry<String, Integer> variant : VARIANTS.entrySet()) {
+                int size = variant.getValue();
+                String variantName = variantName(fileName, variant.getKey());
+                Path destination = resolve(variantName);
+                if (Math.max(original.getWidth(), original.getHeight()) <= size || Files.exists(destination)) {
+                    continue;
+                }
+                BufferedImage resized = resize(original, size, png);
+                Path temp = Files.createTempFile(destination.getParent(), "variant-", ".tmp");
+                try {
+                    if (png) {
+                        ImageIO.write(resized, "png", temp.toFile());
+                    } else {
+                        writeJpeg(resized, temp);
+                    }
+                    Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+                    variantLinks.put(variantName, variantName);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the originals keep being served
+        }
+    }
+
+    /**
+     * Scales an image down so its longest side fits the given size, halving it in
+     * steps for large reductions so the result stays sharp.
+     *
+     * @param image the original image
+     * @param size  the longest side of the result in pixels
+     * @param alpha whether to keep transparency; otherwise it is drawn on white
+     * @return the scaled image
+     */
+    private static BufferedImage resize(BufferedImage image, int size, boolean alpha) {
+        double scale = (double) size / Math.max(image.getWidth(), image.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+
+    /**
+     * Writes an image as a JPEG file.
+     *
+     * @param image       the image
+     * @param destination the file to write
+     * @throws IOException if writing fails
+     */
+    private static void writeJpeg(BufferedImage image, Path destination) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(destination.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Returns the stored name of a variant, e.g. {@code ab/cd/abcd-card.jpg} for {@code ab/cd/abcd.webp}.
+     *
+     * @param fileName the stored name of the original
+     * @param variant  the variant name
+     * @return the stored name of the variant
+     */
+    private static String variantName(String fileName, String variant) {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > fileName.lastIndexOf('/') ? fileName.substring(0, dot) : fileName;
+        return base + "-" + variant + (fileName.endsWith(".png") ? ".png" : ".jpg");
+    }
+
+    /**
+     * Returns whether a stored file is an original image rather than a variant or a temp file.
+     *
+     * @param fileName the stored name
+     * @return true for originals
+     */
+    private static boolean isOriginal(String fileName) {
+        if (fileName.endsWith(".tmp")) {
+            return false;
+        }
+        for (String variant : VARIANTS.keySet()) {
+            if (fileName.endsWith("-" + variant + ".jpg") || fileName.endsWith("-" + variant + ".png")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the variant sizes, smallest first.
+     *
+     * @return the longest side in pixels keyed by variant name
+     */
+    private static Map<String, Integer> variants() {
+        Map<String, Integer> variants = new LinkedHashMap<>();
+        variants.put("thumbnail", 160);
+        variants.put("card", 480);
+        variants.put("full", 1200);
+        return Collections.unmodifiableMap(variants);
+    }
+
+    /**
+     * Returns the lock guarding the commit and deletion of a stored name.
+     *
+     * @param fileName the stored name
+     * @return the lock of the name's stripe
+     */
+    private Object lockFor(String fileName) {
+        return locks[Math.floorMod(fileName.hashCode(), locks.length)];
+    }
+
+    /**
+     * Removes one pin of an image. Must hold the image's lock.
+     *
+     * @param fileName the stored name
+     */
+    private void unpin(String fileName) {
+        pins.computeIfPresent(fileName, (name, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Resolves a stored name inside the upload directory.
+     *
+     * @param fileName the stored name
+     * @return the path of the file
+     * @throws IOException if the name points outside the upload directory
+     */
+    private Path resolve(String fileName) throws IOException {
         Path filePath = uploadDir.resolve(fileName).normalize();
+        if (!filePath.startsWith(uploadDir)) {
+            throw new IOException("Invalid file name: " + fileName);
+        }
+        return filePath;
+    }
+
+    /**
+     * Validates a staged upload and moves it to its content-addressed name.
+     *
+     * @param staged the staged file
+     * @return the stored name
+     * @throws IOException if the image is rejected or cannot be written
+     */
+    private String commit(Path staged) throws IOException {
+        long size = Files.size(staged);
+        if (size > maxUploadBytes) {
+            throw new IOException("Image is larger than " + maxUploadBytes + " bytes.");
+        }
+        byte[] head = new byte[32];
+        int headLength;
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(staged), digest)) {
+            headLength = in.readNBytes(head, 0, head.length);
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String format = imageFormat(head, headLength);
+        if (format == null) {
+            throw new IOException("Only JPEG, PNG, GIF and WebP images can be uploaded.");
+        }
+        int[] dimensions = "webp".equals(format) ? webpDimensions(head, headLength) : dimensions(staged);
+        if (dimensions == null || dimensions[0] <= 0 || dimensions[1] <= 0) {
+            throw new IOException("The image could not be read.");
+        }
+        if (dimensions[0] > maxDimension || dimensions[1] > maxDimension) {
+            throw new IOException("Images may be at most " + maxDimension + " pixels wide and high.");
+        }
 
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found: " + fileName);
+        String hash = HexFormat.of().formatHex(digest.digest());
+        String fileName = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + format;
+        Path destination = uploadDir.resolve(fileName);
+        synchronized (lockFor(fileName)) {
+            pins.merge(fileName, 1, Integer::sum);
+            try {
+                if (!Files.exists(destination)) {
+                    try (FileChannel channel = FileChannel.open(staged, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    Files.createDirectories(destination.getParent());
+                    try {
+                        Files.move(staged, destination, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        // stored concurrently by an identical upload
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                unpin(fileName);
+                throw e;
+            }
         }
+        scheduleVariants(fileName);
+        return fileName;
+    }
 
-        return new UrlResource(filePath.toUri());
+    /**
+     * Detects the image format from the first bytes of a file.
+     *
+     * @param head   the first bytes
+     * @param length the number of bytes read
+     * @return the file extension of the format, or null if it is not a supported image
+     */
+    private static String imageFormat(byte[] head, int length) {
+        if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        }
+        if (startsWith(head, length, 0, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(head, length, 0, 'R', 'I', 'F', 'F') && startsWith(head, length, 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        return null;
     }
 
-    public boolean deleteImage(String fileName) throws IOException {
+    /**
+     * Returns whether the bytes at an offset match the expected values.
+     *
+     * @param head     the bytes read
+     * @param length   the number of bytes read
+     * @param offset   where to start comparing
+     * @param expected the expected unsigned byte values
+     * @return true if every expected byte matches
+     */
+    private static boolean startsWith(byte[] head, int length, int offset, int... expected) {
+        if (length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((head[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        Path filePath = uploadDir.resolve(fileName);
-        return Files.deleteIfExists(filePath);
+    /**
+     * Reads the width and height of a JPEG, PNG or GIF image from its header, without decoding it.
+     *
+     * @param file the image file
+     * @return the width and height, or null if no reader understands the file
+     * @throws IOException if the file cannot be read
+     */
+    private static int[] dimensions(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
     }
 
-    public String getFullPath(MultipartFile file) {
+    /**
+     * Reads the width and height of a WebP image from its first chunk header.
+     *
+     * @param head   the first bytes of the file
+     * @param length the number of bytes read
+     * @return the width and height, or null if the header is not recognized
+     */
+    private static int[] webpDimensions(byte[] head, int length) {
+        if (length < 30) {
+            return null;
+        }
+        if (startsWith(head, length, 12, 'V', 'P', '8', 'X')) {
+            return new int[]{1 + littleEndian(head, 24, 3), 1 + littleEndian(head, 27, 3)};
+        }
+        if (startsWith(head, length, 12, 'V', 'P', '8', ' ')) {
+            return new int[]{littleEndian(head, 26, 2) & 0x3FFF, littleEndian(head, 28, 2) & 0x3FFF};
+        }
+        if (startsWith(head, length, 12, 'V', 'P', '8', 'L')) {
+            int bits = littleEndian(head, 21, 4);
+            return new int[]{1 + (bits & 0x3FFF), 1 + ((bits >> 14) & 0x3FFF)};
+        }
+        return null;
+    }
 
-        return uploadDir.toString() + "/" + file.getOriginalFilename();
+    /**
+     * Reads an unsigned little-endian number.
+     *
+     * @param bytes  the bytes
+     * @param offset the first byte
+     * @param count  the number of bytes, at most 4
+     * @return the number
+     */
+    private static int littleEndian(byte[] bytes, int offset, int count) {
+        int value = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a new SHA-256 digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 }
@@ -1,121 +1,233 @@
 package com.example.ex4.session;
 
+import com.example.ex4.components.InventoryLedger;
 import com.example.ex4.repo.CartItem;
 import com.example.ex4.repo.CartItemRepository;
 import com.example.ex4.repo.Product;
+import com.example.ex4.services.CartItemService;
 import com.example.ex4.services.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * Session-scoped component for managing cart state per user session.
  * <p>
- * Stores and manipulates a list of {@link CartItem} objects,
+ * Stores and manipulates the cart lines of the session,
  * providing operations to add, remove, and clear cart items,
  * as well as compute cart metrics like total price and size.
+ * Each line keeps only the product id, the quantity and the price last
+ * loaded; {@link CartItem} entities with their products are built from the
+ * catalog when the cart is displayed or checked out. Lines are kept in a map
+ * keyed by product id, in the order they were added, and the total quantity
+ * and price are kept up to date on every change, so lookups, removals and the
+ * totals shown on every page cost the same no matter how large the cart is.
+ * Once a user logs in, every change marks the cart dirty in the
+ * {@link CartItemService}, which saves it in the background.
+ * </p>
+ * <p>
+ * When the session is serialized (e.g. by a session store) the lines are written
+ * as plain numbers, about 20 bytes each, and the services are looked up again
+ * when a session read back is first used.
  * </p>
  */
 @Component
 public class CartSession implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     /**
      * Service for retrieving current product details from the database.
      */
     @Autowired
-    private ProductService productService;
+    private transient ProductService productService;
 
     /**
-     * Internal list of {@link CartItem} entries in the cart.
+     * In-memory stock ledger holding this cart's reservations when enabled.
      */
-    private ArrayList<CartItem> cartItems;
+    @Autowired
+    private transient InventoryLedger inventoryLedger;
 
     /**
-     * Constructs an empty cart session.
+     * Write-behind store that persists the cart of a logged-in user.
      */
-    public CartSession() {
-        cartItems = new ArrayList<>();
-    }
+    @Autowired
+    private transient CartItemService cartItemService;
 
     /**
-     * Finds a cart item by the given product ID.
-     *
-     * @param productId the ID of the product to find
-     * @return the matching CartItem, or null if not found
+     * Cart lines keyed by product id, in the order they were added.
      */
-    private CartItem findCartItemByProductId(long productId) {
-        CartItem cartItem = null;
-        for (CartItem item : cartItems) {
-            if (item.getProduct().getId() == productId) {
-                cartItem = item;
-                break;
-            }
+    private transient LinkedHashMap<Long, CartLine> lines;
+
+    /**
+     * Sum of the quantities of all cart lines.
+     */
+    private transient int totalQuantity;
+
+    /**
+     * Sum of price × quantity of all cart lines, at the prices last loaded.
+     */
+    private transient double totalPrice;
+
+    /**
+     * Identifies this cart's reservation in the inventory ledger.
+     */
+    private String reservationId;
+
+    /**
+     * Email of the logged-in user the cart is saved for; null for anonymous carts.
+     */
+    private String owner;
+
+    /**
+     * Idempotency key of the order last handed off to the asynchronous pipeline,
+     * until it is known to be placed or failed.
+     */
+    private String handedOffKey;
+
+    /**
+     * Quantities of the order last handed off, keyed by product id, put back into
+     * the cart if it fails.
+     */
+    private LinkedHashMap<Long, Integer> handedOff;
+
+    /**
+     * One line of the cart.
+     */
+    private static final class CartLine {
+
+        /** The product id. */
+        private final long productId;
+
+        /** Units of the product in the cart. */
+        private int quantity;
+
+        /** Unit price of the product as last loaded from the catalog. */
+        private double price;
+
+        /**
+         * Constructs a cart line.
+         *
+         * @param productId the product id
+         * @param quantity  the units in the cart
+         * @param price     the unit price
+         */
+        private CartLine(long productId, int quantity, double price) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.price = price;
         }
-        return cartItem;
     }
 
     /**
-     * Calculates the total price for all items in the cart.
+     * Constructs an empty cart session.
+     */
+    public CartSession() {
+        lines = new LinkedHashMap<>();
+        reservationId = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns the total price for all items in the cart.
      *
      * @return the sum of (price × quantity) for each cart item
      */
-    public double getTotalCartPrice() {
-        double totalPrice = 0;
-        for (CartItem cartItem : cartItems) {
-            double productPrice = cartItem.getProduct().getPrice();
-            int quantity = cartItem.getQuantity();
-            totalPrice += productPrice * quantity;
-        }
+    public synchronized double getTotalCartPrice() {
         return totalPrice;
     }
 
     /**
-     * Replaces the current cart items list with the provided list.
+     * Replaces the current cart items with the provided list.
      *
      * @param cartItems the new list of CartItem objects
      */
-    public void setCartItems(ArrayList<CartItem> cartItems) {
-        this.cartItems = cartItems;
+    public synchronized void setCartItems(List<CartItem> cartItems) {
+        lines = new LinkedHashMap<>();
+        for (CartItem cartItem : cartItems) {
+            Product product = cartItem.getProduct();
+            lines.put(product.getId(), new CartLine(product.getId(), cartItem.getQuantity(), product.getPrice()));
+        }
+        recomputeTotals();
+        changed();
     }
 
     /**
-     * Returns the list of cart items, ensuring each item's product is refreshed
-     * from the database.
+     * Returns the cart items, built with their products from the catalog in a
+     * single batch lookup.
+     * <p>
+     * Lines whose product no longer exists are dropped from the cart, and the
+     * prices and total price are updated to the current catalog prices.
+     * </p>
      *
-     * @return the synchronized list of CartItem objects
+     * @return the cart items, in the order they were added
      */
-    public ArrayList<CartItem> getCartItems() {
-        for (CartItem cartItem : cartItems) {
-            long productId = cartItem.getProduct().getId();
-            Product product = productService.getProductById(productId);
-            cartItem.setProduct(product);
+    public synchronized List<CartItem> getCartItems() {
+        List<CartItem> cartItems = new ArrayList<>();
+        if (lines.isEmpty()) {
+            return cartItems;
+        }
+        Map<Long, Product> products = productService().getProductsByIds(lines.keySet());
+        if (lines.keySet().retainAll(products.keySet())) {
+            changed();
+        }
+        for (CartLine line : lines.values()) {
+            Product product = products.get(line.productId);
+            line.price = product.getPrice();
+            CartItem cartItem = new CartItem(line.quantity, product, null);
+            cartItem.setId(line.productId);
+            cartItems.add(cartItem);
         }
+        recomputeTotals();
         return cartItems;
     }
 
+    /**
+     * Returns the id of this cart's reservation in the inventory ledger.
+     *
+     * @return the reservation id
+     */
+    public synchronized String getReservationId() {
+        return reservationId;
+    }
+
     /**
      * Adds the specified CartItem to the cart. If an item for the same product
      * already exists, its quantity is increased.
+     * <p>
+     * When the inventory ledger is enabled the units are reserved first, and
+     * nothing is added if they are not available.
+     * </p>
      *
      * @param cartItem  the CartItem to add
      * @param productId the ID of the product to add
+     * @return true if the item was added, false if the product is out of stock
      */
-    public void add(CartItem cartItem, long productId) {
-        CartItem existing = findCartItemByProductId(productId);
-        if (existing != null) {
-            existing.setQuantity(existing.getQuantity() + cartItem.getQuantity());
+    public synchronized boolean add(CartItem cartItem, long productId) {
+        int quantity = cartItem.getQuantity();
+        if (quantity <= 0 || !inventoryLedger().reserve(reservationId, productId, quantity)) {
+            return false;
+        }
+        CartLine line = lines.get(productId);
+        if (line != null) {
+            line.quantity += quantity;
         } else {
-            Product product = productService.getProductById(productId);
-            cartItem.setId(product.getId());
-            cartItem.setProduct(product);
-            cartItems.add(cartItem);
+            Product product = productService().getProductById(productId);
+            line = new CartLine(productId, quantity, product.getPrice());
+            lines.put(productId, line);
         }
+        addToTotals(line.price, quantity);
+        changed();
+        return true;
     }
 
     /**
@@ -124,34 +236,225 @@ public class CartSession implements Serializable {
      * @param id the product ID of the item to remove
      * @throws Error if no matching cart item is found
      */
-    public void remove(long id) {
-        for (int i = 0; i < cartItems.size(); i++) {
-            if (cartItems.get(i).getProduct().getId() == id) {
-                cartItems.remove(i);
-                return;
-            }
+    public synchronized void remove(long id) {
+        CartLine removed = lines.remove(id);
+        if (removed == null) {
+            throw new Error("Cart Item To Delete Was Not Found");
+        }
+        addToTotals(removed.price, -removed.quantity);
+        inventoryLedger().release(reservationId, id);
+        changed();
+    }
+
+    /**
+     * Clears all items from the cart and gives back any units still reserved for it.
+     */
+    public synchronized void clearCart() {
+        lines.clear();
+        recomputeTotals();
+        inventoryLedger().releaseAll(reservationId);
+        changed();
+    }
+
+    /**
+     * Empties the cart after its order was queued for the asynchronous pipeline.
+     * <p>
+     * Unlike {@link #clearCart()} the reservation is kept for the queued order, and
+     * the cart starts a new one. The quantities are kept until {@link #settle} tells
+     * whether the order was placed.
+     * </p>
+     *
+     * @param key the idempotency key of the queued order
+     */
+    public synchronized void handOff(String key) {
+        handedOffKey = key;
+        handedOff = new LinkedHashMap<>(snapshot());
+        lines = new LinkedHashMap<>();
+        recomputeTotals();
+        reservationId = UUID.randomUUID().toString();
+        changed();
+    }
+
+    /**
+     * Settles the order last handed off once its outcome is known. If it was not placed,
+     * its lines are added back like any new line, skipping products already in the cart,
+     * products that were deleted, and units that cannot be reserved any more.
+     *
+     * @param key    the idempotency key of the order
+     * @param placed whether the order was placed
+     * @return true if the order was the one handed off by this cart and not settled before
+     */
+    public synchronized boolean settle(String key, boolean placed) {
+        if (handedOffKey == null || !handedOffKey.equals(key)) {
+            return false;
         }
-        throw new Error("Cart Item To Delete Was Not Found");
+        Map<Long, Integer> quantities = handedOff;
+        handedOffKey = null;
+        handedOff = null;
+        if (!placed) {
+            Map<Long, Product> products = productService().getProductsByIds(quantities.keySet());
+            quantities.forEach((productId, quantity) -> {
+                if (products.containsKey(productId) && !lines.containsKey(productId)) {
+                    add(new CartItem(quantity, null, null), productId);
+                }
+            });
+        }
+        return true;
     }
 
     /**
-     * Clears all items from the cart.
+     * Merges a user's saved cart into this cart at login and saves the cart for that
+     * user from now on.
+     * <p>
+     * Saved lines of products already in the cart are skipped; the others are added
+     * like any new line, so they are dropped if their units cannot be reserved.
+     * </p>
+     *
+     * @param email the email of the user who logged in
+     * @param saved the saved quantities keyed by product id, of products that still exist
      */
-    public void clearCart() {
-        cartItems.clear();
+    public synchronized void restore(String email, Map<Long, Integer> saved) {
+        owner = null;
+        saved.forEach((productId, quantity) -> {
+            if (!lines.containsKey(productId)) {
+                add(new CartItem(quantity, null, null), productId);
+            }
+        });
+        owner = email;
+        if (!lines.isEmpty() || !saved.isEmpty()) {
+            changed();
+        }
     }
 
     /**
      * Returns the total number of items in the cart (sum of quantities).
+     * <p>
+     * Uses the session state only and never touches the database.
+     * </p>
      *
      * @return the total quantity of items
      */
-    public int getCartSize() {
-        int cartItemCount = 0;
-        for (CartItem cartItem : cartItems) {
-            cartItemCount += cartItem.getQuantity();
+    public synchronized int getCartSize() {
+        return totalQuantity;
+    }
+
+    /**
+     * Returns the quantities in the cart, for the write-behind store.
+     *
+     * @return a copy of the quantities keyed by product id, in the order they were added
+     */
+    public synchronized Map<Long, Integer> snapshot() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        lines.forEach((productId, line) -> quantities.put(productId, line.quantity));
+        return quantities;
+    }
+
+    /**
+     * Marks the cart dirty in the write-behind store if it belongs to a logged-in user.
+     */
+    private void changed() {
+        if (owner != null) {
+            cartItemService().scheduleSave(owner, this);
+        }
+    }
+
+    /**
+     * Adds a change of one line to the running totals.
+     *
+     * @param price    the unit price of the line
+     * @param quantity the change in quantity, negative when units are removed
+     */
+    private void addToTotals(double price, int quantity) {
+        totalQuantity += quantity;
+        totalPrice = lines.isEmpty() ? 0 : totalPrice + price * quantity;
+    }
+
+    /**
+     * Recomputes the running totals from every cart line.
+     */
+    private void recomputeTotals() {
+        totalQuantity = 0;
+        totalPrice = 0;
+        for (CartLine line : lines.values()) {
+            totalQuantity += line.quantity;
+            totalPrice += line.price * line.quantity;
+        }
+    }
+
+    //========================================
+    //            Serialization
+    //========================================
+
+    /**
+     * Writes the reservation id, the owner and every line as product id, quantity and price.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(lines.size());
+        for (CartLine line : lines.values()) {
+            out.writeLong(line.productId);
+            out.writeInt(line.quantity);
+            out.writeDouble(line.price);
+        }
+    }
+
+    /**
+     * Reads the state written by {@link #writeObject(ObjectOutputStream)} and recomputes
+     * the totals. The services are looked up on first use, since the session may be
+     * read before the application context is ready.
+     *
+     * @param in the stream to read from
+     * @throws IOException            if reading fails
+     * @throws ClassNotFoundException if a class of the stream cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        lines = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            CartLine line = new CartLine(in.readLong(), in.readInt(), in.readDouble());
+            lines.put(line.productId, line);
+        }
+        recomputeTotals();
+    }
+
+    /**
+     * Returns the product service, looking it up if this cart was deserialized.
+     *
+     * @return the product service
+     */
+    private ProductService productService() {
+        if (productService == null) {
+            productService = SessionBeans.get(ProductService.class);
+        }
+        return productService;
+    }
+
+    /**
+     * Returns the inventory ledger, looking it up if this cart was deserialized.
+     *
+     * @return the inventory ledger
+     */
+    private InventoryLedger inventoryLedger() {
+        if (inventoryLedger == null) {
+            inventoryLedger = SessionBeans.get(InventoryLedger.class);
+        }
+        return inventoryLedger;
+    }
+
+    /**
+     * Returns the write-behind cart store, looking it up if this cart was deserialized.
+     *
+     * @return the cart store
+     */
+    private CartItemService cartItemService() {
+        if (cartItemService == null) {
+            cartItemService = SessionBeans.get(CartItemService.class);
         }
-        return cartItemCount;
+        return cartItemService;
     }
 
 }
@@ -0,0 +1,163 @@
+package com.example.ex4.session;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Session store on the application's database, shared by every application instance.
+ * <p>
+ * A session is one row of {@code http_session} plus one row of
+ * {@code http_session_attribute} per attribute. Saving a session updates its row,
+ * inserting it if it does not exist yet, and rewrites only the changed attributes:
+ * one batched delete for the changed and removed names and one batched insert for
+ * the new values, in a single transaction. A save that loses an insert race to a
+ * concurrent save of the same session is run once more and then finds the rows. Each
+ * session is saved on its own at the end of its request, so the next request can
+ * be served by another instance; writes of different sessions are therefore not
+ * batched together. Loading a session takes two queries.
+ * </p>
+ * <p>
+ * Only portable SQL is used, so the store runs on MySQL and H2 alike. The tables
+ * are mapped by {@link com.example.ex4.repo.SessionRecord} and
+ * {@link com.example.ex4.repo.SessionAttributeRecord}, so they are created
+ * with the rest of the schema.
+ * </p>
+ */
+public class JdbcSessionStore implements SessionStore {
+
+    /** Runs the statements. */
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Runs every write of a session in one transaction. */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Constructs the store.
+     *
+     * @param jdbcTemplate        runs the statements
+     * @param transactionTemplate runs every write of a session in one transaction
+     */
+    public JdbcSessionStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    @Override
+    public Entry load(String id) {
+        List<Entry> rows = jdbcTemplate.query(
+                "SELECT creation_time, last_accessed_time, max_inactive_seconds FROM http_session WHERE id = ?",
+                (rs, rowNum) -> new Entry(id, rs.getLong(1), rs.getLong(2), rs.getInt(3), new HashMap<>()),
+                id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Entry entry = rows.get(0);
+        jdbcTemplate.query("SELECT attribute_name, attribute_value FROM http_session_attribute WHERE session_id = ?",
+                rs -> {
+                    entry.attributes().put(rs.getString(1), rs.getBytes(2));
+                },
+                id);
+        return entry;
+    }
+
+    @Override
+    public void save(Entry entry, Set<String> removed) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(entry, removed));
+        } catch (DuplicateKeyException e) {
+            // another request inserted the same session or attribute first; its rows now exist
+            transactionTemplate.executeWithoutResult(status -> write(entry, removed));
+        }
+    }
+
+    @Override
+    public void changeId(String oldId, String newId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE http_session SET id = ? WHERE id = ?", newId, oldId);
+            jdbcTemplate.update("UPDATE http_session_attribute SET session_id = ? WHERE session_id = ?", newId, oldId);
+        });
+    }
+
+    @Override
+    public void delete(String id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM http_session_attribute WHERE session_id = ?", id);
+            jdbcTemplate.update("DELETE FROM http_session WHERE id = ?", id);
+        });
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM http_session_attribute WHERE session_id IN "
+                    + "(SELECT id FROM http_session WHERE expiry_time < ?)", now);
+            return jdbcTemplate.update("DELETE FROM http_session WHERE expiry_time < ?", now);
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
+    //========================================
+    //            Private Helpers
+    //========================================
+
+    /**
+     * Writes a session inside the caller's transaction: updates its row, inserting it if
+     * no row was updated, then replaces the changed attributes and deletes the removed ones.
+     *
+     * @param entry   the session with its changed attributes
+     * @param removed names of the attributes removed since the last save
+     * @throws DuplicateKeyException if a concurrent save inserted a row first
+     */
+    private void write(Entry entry, Set<String> removed) {
+        long expiryTime = expiryTime(entry);
+        int updated = jdbcTemplate.update(
+                "UPDATE http_session SET last_accessed_time = ?, max_inactive_seconds = ?, expiry_time = ? WHERE id = ?",
+                entry.lastAccessedTime(), entry.maxInactiveSeconds(), expiryTime, entry.id());
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO http_session (id, creation_time, last_accessed_time, max_inactive_seconds, expiry_time) "
+                            + "VALUES (?, ?, ?, ?, ?)",
+                    entry.id(), entry.creationTime(), entry.lastAccessedTime(), entry.maxInactiveSeconds(),
+                    expiryTime);
+        }
+        Set<String> replaced = new HashSet<>(removed);
+        replaced.addAll(entry.attributes().keySet());
+        if (!replaced.isEmpty()) {
+            List<Object[]> deletes = new ArrayList<>();
+            replaced.forEach(name -> deletes.add(new Object[]{entry.id(), name}));
+            jdbcTemplate.batchUpdate(
+                    "DELETE FROM http_session_attribute WHERE session_id = ? AND attribute_name = ?", deletes);
+        }
+        if (!entry.attributes().isEmpty()) {
+            List<Object[]> inserts = new ArrayList<>();
+            entry.attributes().forEach((name, bytes) -> inserts.add(new Object[]{entry.id(), name, bytes}));
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO http_session_attribute (session_id, attribute_name, attribute_value) "
+                            + "VALUES (?, ?, ?)",
+                    inserts);
+        }
+    }
+
+    /**
+     * Returns the time after which a session may be deleted.
+     *
+     * @param entry the session
+     * @return the expiry time in milliseconds, or {@link Long#MAX_VALUE} if it never expires
+     */
+    private static long expiryTime(Entry entry) {
+        return entry.maxInactiveSeconds() < 0
+                ? Long.MAX_VALUE
+                : entry.lastAccessedTime() + entry.maxInactiveSeconds() * 1000L;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.ex4.session;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session store for a single application instance.
+ * <p>
+ * Keeps the serialized attributes of every session in direct byte buffers,
+ * outside the Java heap, so many idle sessions do not add to garbage collection
+ * work; only the ids and timestamps stay on the heap. A changed attribute is
+ * written into its existing buffer when it still fits. Direct memory is bounded
+ * by {@code -XX:MaxDirectMemorySize}, and sessions are lost on restart.
+ * </p>
+ */
+public class OffHeapSessionStore implements SessionStore {
+
+    /** Stored sessions keyed by id. */
+    private final Map<String, Slot> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * One stored session. Guarded by its own monitor.
+     */
+    private static final class Slot {
+
+        /** Creation time in milliseconds. */
+        private final long creationTime;
+
+        /** Last access time in milliseconds. */
+        private long lastAccessedTime;
+
+        /** Seconds of inactivity after which the session expires. */
+        private int maxInactiveSeconds;
+
+        /** Serialized attributes keyed by name; each buffer's limit is the attribute length. */
+        private final Map<String, ByteBuffer> attributes = new HashMap<>();
+
+        /**
+         * Constructs an empty slot.
+         *
+         * @param creationTime creation time in milliseconds
+         */
+        private Slot(long creationTime) {
+            this.creationTime = creationTime;
+        }
+
+        /**
+         * Returns whether the session expired.
+         *
+         * @param now the current time in milliseconds
+         * @return true if the session was not accessed within its inactivity interval
+         */
+        private boolean isExpired(long now) {
+            return maxInactiveSeconds >= 0 && now - lastAccessedTime >= maxInactiveSeconds * 1000L;
+        }
+    }
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    @Override
+    public Entry load(String id) {
+        Slot slot = sessions.get(id);
+        if (slot == null) {
+            return null;
+        }
+        synchronized (slot) {
+            Map<String, byte[]> attributes = new HashMap<>();
+            slot.attributes.forEach((name, buffer) -> {
+                byte[] bytes = new byte[buffer.limit()];
+                buffer.get(0, bytes);
+                attributes.put(name, bytes);
+            });
+            return new Entry(id, slot.creationTime, slot.lastAccessedTime, slot.maxInactiveSeconds, attributes);
+        }
+    }
+
+    @Override
+    public void save(Entry entry, Set<String> removed) {
+        Slot slot = sessions.computeIfAbsent(entry.id(), id -> new Slot(entry.creationTime()));
+        synchronized (slot) {
+            slot.lastAccessedTime = entry.lastAccessedTime();
+            slot.maxInactiveSeconds = entry.maxInactiveSeconds();
+            slot.attributes.keySet().removeAll(removed);
+            entry.attributes().forEach((name, bytes) -> {
+                ByteBuffer buffer = slot.attributes.get(name);
+                if (buffer == null || buffer.capacity() < bytes.length) {
+                    buffer = ByteBuffer.allocateDirect(bytes.length);
+                    slot.attributes.put(name, buffer);
+                }
+                buffer.clear();
+                buffer.put(bytes).flip();
+            });
+        }
+    }
+
+    @Override
+    public void changeId(String oldId, String newId) {
+        Slot slot = sessions.remove(oldId);
+        if (slot != null) {
+            sessions.put(newId, slot);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        int deleted = 0;
+        for (Map.Entry<String, Slot> session : sessions.entrySet()) {
+            Slot slot = session.getValue();
+            boolean expired;
+            synchronized (slot) {
+                expired = slot.isExpired(now);
+            }
+            if (expired && sessions.remove(session.getKey(), slot)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.ex4.session;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives session state read back from a session store access to application beans.
+ * <p>
+ * Session-scoped beans are injected when they are created, but an instance
+ * deserialized by the servlet container or a session store is not; it looks up
+ * the beans it needs here instead.
+ * </p>
+ */
+@Component
+public class SessionBeans implements ApplicationContextAware {
+
+    /** The running application context. */
+    private static ApplicationContext context;
+
+    /**
+     * Stores the application context once it is available.
+     *
+     * @param applicationContext the running application context
+     */
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        context = applicationContext;
+    }
+
+    /**
+     * Returns the bean of the given type.
+     *
+     * @param type the bean type
+     * @param <T>  the bean type
+     * @return the bean
+     * @throws IllegalStateException if the application context is not available yet
+     */
+    public static <T> T get(Class<T> type) {
+        if (context == null) {
+            throw new IllegalStateException("Application context is not available");
+        }
+        return context.getBean(type);
+    }
+}
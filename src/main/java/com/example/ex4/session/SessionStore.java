@@ -0,0 +1,68 @@
+package com.example.ex4.session;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage behind the {@link StoredSessionRepository}.
+ * <p>
+ * Sessions are stored as their timestamps plus every attribute in serialized
+ * form. The repository only hands over the attributes that changed since the
+ * session was loaded, so a store writes nothing for attributes that were only
+ * read.
+ * </p>
+ */
+public interface SessionStore {
+
+    /**
+     * A session as held by the store.
+     *
+     * @param id                 the session id
+     * @param creationTime       creation time in milliseconds
+     * @param lastAccessedTime   last access time in milliseconds
+     * @param maxInactiveSeconds seconds of inactivity after which the session expires
+     * @param attributes         serialized attributes keyed by name
+     */
+    record Entry(String id, long creationTime, long lastAccessedTime, int maxInactiveSeconds,
+                 Map<String, byte[]> attributes) {
+    }
+
+    /**
+     * Loads a session.
+     *
+     * @param id the session id
+     * @return the stored session, or null if there is none
+     */
+    Entry load(String id);
+
+    /**
+     * Writes a session, creating it if it is not stored yet.
+     *
+     * @param entry   the session, holding only the attributes that changed
+     * @param removed names of the attributes that were removed
+     */
+    void save(Entry entry, Set<String> removed);
+
+    /**
+     * Moves a stored session to a new id, e.g. after login.
+     *
+     * @param oldId the current id
+     * @param newId the new id
+     */
+    void changeId(String oldId, String newId);
+
+    /**
+     * Deletes a session.
+     *
+     * @param id the session id
+     */
+    void delete(String id);
+
+    /**
+     * Deletes every session that was not accessed within its inactivity interval.
+     *
+     * @param now the current time in milliseconds
+     * @return the number of sessions deleted
+     */
+    int deleteExpired(long now);
+}
@@ -0,0 +1,278 @@
+package com.example.ex4.session;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Spring Session repository that keeps HTTP sessions in a {@link SessionStore}.
+ * <p>
+ * Attributes are deserialized only when a request reads them, and on save only
+ * the attributes that were read or set are serialized again and compared with
+ * the stored bytes; just the ones that really changed are written. Session-scoped
+ * beans such as the cart are set again by Spring at the end of every request that
+ * used them, so without the comparison every page view would rewrite them.
+ * </p>
+ * <p>
+ * A request that changed nothing only moves the last access time, which is written
+ * at most once per {@code session.store.touch-interval-seconds}; sessions may
+ * therefore live up to that long past their timeout. Expired sessions are deleted
+ * by a scheduled sweep.
+ * </p>
+ */
+@Component
+public class StoredSessionRepository implements SessionRepository<StoredSessionRepository.StoredSession> {
+
+    /** Inactivity after which a new session expires. */
+    @Value("${server.servlet.session.timeout:30m}")
+    private Duration timeout;
+
+    /** Seconds after which an unchanged session's last access time is written again. */
+    @Value("${session.store.touch-interval-seconds:60}")
+    private long touchIntervalSeconds;
+
+    /** Store holding the sessions. */
+    @Autowired
+    private SessionStore sessionStore;
+
+    /** Serializes attribute values. */
+    private final SerializingConverter serializer = new SerializingConverter();
+
+    /** Deserializes attribute values with the application class loader. */
+    private final DeserializingConverter deserializer = new DeserializingConverter(getClass().getClassLoader());
+
+    //========================================
+    //            Public Methods
+    //========================================
+
+    @Override
+    public StoredSession createSession() {
+        long now = System.currentTimeMillis();
+        StoredSession session = new StoredSession(null, now, now, new HashMap<>());
+        session.setMaxInactiveInterval(timeout);
+        return session;
+    }
+
+    @Override
+    public void save(StoredSession session) {
+        if (session.storedId != null && !session.storedId.equals(session.id)) {
+            sessionStore.changeId(session.storedId, session.id);
+            session.storedId = session.id;
+        }
+        Map<String, byte[]> changed = new HashMap<>();
+        session.values.forEach((name, value) -> {
+            byte[] bytes = serializer.convert(value);
+            if (!Arrays.equals(bytes, session.stored.get(name))) {
+                changed.put(name, bytes);
+            }
+        });
+        boolean touched = session.lastAccessedTime - session.storedLastAccessedTime
+                >= touchIntervalSeconds * 1000
+                || session.maxInactiveSeconds != session.storedMaxInactiveSeconds;
+        if (session.storedId != null && changed.isEmpty() && session.removed.isEmpty() && !touched) {
+            return;
+        }
+        sessionStore.save(new SessionStore.Entry(session.id, session.creationTime, session.lastAccessedTime,
+                session.maxInactiveSeconds, changed), session.removed);
+        session.stored.putAll(changed);
+        session.stored.keySet().removeAll(session.removed);
+        session.removed.clear();
+        session.storedId = session.id;
+        session.storedLastAccessedTime = session.lastAccessedTime;
+        session.storedMaxInactiveSeconds = session.maxInactiveSeconds;
+    }
+
+    @Override
+    public StoredSession findById(String id) {
+        SessionStore.Entry entry = sessionStore.load(id);
+        if (entry == null) {
+            return null;
+        }
+        StoredSession session = new StoredSession(id, entry.creationTime(), entry.lastAccessedTime(),
+                entry.attributes());
+        session.maxInactiveSeconds = entry.maxInactiveSeconds();
+        session.storedMaxInactiveSeconds = entry.maxInactiveSeconds();
+        if (entry.maxInactiveSeconds() >= 0 && System.currentTimeMillis() - entry.lastAccessedTime()
+                >= (entry.maxInactiveSeconds() + touchIntervalSeconds) * 1000) {
+            sessionStore.delete(id);
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessionStore.delete(id);
+    }
+
+    //========================================
+    //            Scheduled Tasks
+    //========================================
+
+    /**
+     * Periodically deletes the sessions that expired.
+     * <p>
+     * The stored last access time may lag by up to the touch interval, so a session
+     * is only deleted once that much more time has passed.
+     * </p>
+     *
+     * @return the number of sessions deleted
+     */
+    @Scheduled(fixedDelayString = "${session.store.cleanup-interval-ms:60000}")
+    public int deleteExpired() {
+        return sessionStore.deleteExpired(System.currentTimeMillis() - touchIntervalSeconds * 1000);
+    }
+
+    //========================================
+    //            Session
+    //========================================
+
+    /**
+     * A session loaded from or about to be written to the store. Used by one request at a time.
+     */
+    public final class StoredSession implements Session {
+
+        /** The current id. */
+        private String id;
+
+        /** The id the session is stored under, or null if it was never saved. */
+        private String storedId;
+
+        /** Creation time in milliseconds. */
+        private final long creationTime;
+
+        /** Last access time in milliseconds. */
+        private long lastAccessedTime;
+
+        /** Last access time as last written to the store. */
+        private long storedLastAccessedTime;
+
+        /** Seconds of inactivity after which the session expires; negative for never. */
+        private int maxInactiveSeconds;
+
+        /** Inactivity interval as last written to the store. */
+        private int storedMaxInactiveSeconds;
+
+        /** Serialized attributes as last written to the store, keyed by name. */
+        private final Map<String, byte[]> stored;
+
+        /** Attributes read or set during this request, keyed by name. */
+        private final Map<String, Object> values = new HashMap<>();
+
+        /** Names of stored attributes removed during this request. */
+        private final Set<String> removed = new HashSet<>();
+
+        /**
+         * Constructs a session.
+         *
+         * @param storedId         the id the session is stored under, or null for a new session
+         * @param creationTime     creation time in milliseconds
+         * @param lastAccessedTime last access time in milliseconds
+         * @param stored           the stored serialized attributes, keyed by name
+         */
+        private StoredSession(String storedId, long creationTime, long lastAccessedTime, Map<String, byte[]> stored) {
+            this.id = storedId != null ? storedId : UUID.randomUUID().toString();
+            this.storedId = storedId;
+            this.creationTime = creationTime;
+            this.lastAccessedTime = lastAccessedTime;
+            this.storedLastAccessedTime = lastAccessedTime;
+            this.stored = stored;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String changeSessionId() {
+            id = UUID.randomUUID().toString();
+            return id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAttribute(String attributeName) {
+            Object value = values.get(attributeName);
+            if (value == null && !removed.contains(attributeName)) {
+                byte[] bytes = stored.get(attributeName);
+                if (bytes != null) {
+                    value = deserializer.convert(bytes);
+                    values.put(attributeName, value);
+                }
+            }
+            return (T) value;
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            Set<String> names = new HashSet<>(stored.keySet());
+            names.removeAll(removed);
+            names.addAll(values.keySet());
+            return names;
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            if (attributeValue == null) {
+                removeAttribute(attributeName);
+                return;
+            }
+            values.put(attributeName, attributeValue);
+            removed.remove(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            values.remove(attributeName);
+            if (stored.containsKey(attributeName)) {
+                removed.add(attributeName);
+            }
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return Instant.ofEpochMilli(creationTime);
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime.toEpochMilli();
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return Instant.ofEpochMilli(lastAccessedTime);
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            maxInactiveSeconds = (int) interval.getSeconds();
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return Duration.ofSeconds(maxInactiveSeconds);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return maxInactiveSeconds >= 0
+                    && System.currentTimeMillis() - lastAccessedTime >= maxInactiveSeconds * 1000L;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Module for the order status page of the asynchronous checkout.
+ * Polls the order status API while the order is queued and reloads
+ * the page once it was placed or failed.
+ * @module orderStatusHandler
+ */
+(function(){
+
+    /** @type {number} Milliseconds between two status requests. */
+    const POLL_INTERVAL = 1000;
+
+    /**
+     * Namespace for order status polling logic.
+     * @namespace orderStatusHandler
+     */
+    const orderStatusHandler = (() => {
+
+        /**
+         * Requests the order status and schedules the next request while it is still queued.
+         * @async
+         * @function poll
+         * @memberof orderStatusHandler
+         * @param {string} key - Idempotency key of the submitted payment form.
+         */
+        async function poll(key) {
+            try {
+                const response = await fetch(`/api/user/orders/${encodeURIComponent(key)}/status`);
+                if (!response.ok) {
+                    throw new Error('Loading the order status failed');
+                }
+                const status = await response.json();
+                if (status.state !== 'queued') {
+                    window.location.reload();
+                    return;
+                }
+            } catch (err) {
+                console.error(err);
+            }
+            setTimeout(() => poll(key), POLL_INTERVAL);
+        }
+
+        return { poll };
+    })()
+
+    /**
+     * Starts polling on DOMContentLoaded if the order is still queued.
+     */
+    document.addEventListener('DOMContentLoaded', () => {
+        const statusBox = document.getElementById('order-status');
+
+        if (statusBox && statusBox.dataset.state === 'queued') {
+            setTimeout(() => orderStatusHandler.poll(statusBox.dataset.key), POLL_INTERVAL);
+        }
+    })
+
+})()
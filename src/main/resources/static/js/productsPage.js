@@ -1,6 +1,7 @@
 /**
  * Module for handling sorting of product cards in the UI.
- * Allows sorting products by price in ascending or descending order.
+ * Reloads the category page with the selected server-side sort order,
+ * starting again from the first page.
  * @module sortHandler
  */
 (function(){
@@ -13,35 +14,18 @@
 
         /** @type {HTMLSelectElement} */
         const select = document.getElementById('sort-select');
-        /** @type {HTMLElement} */
-        const container = document.getElementById('products-container');
 
         /**
-         * Sorts product cards based on selected price direction.
+         * Navigates to the first page of the category using the selected sort order.
          * @function sort
          * @memberof handleSort
          */
         function sort(){
 
-            const direction = select.value;
-            if (direction === 'none') return;
-
-            // 2) Grab an array of all the card <div class="col"> elements
-            const cards = Array.from(container.querySelectorAll('.product-container'));
-
-            // 3) Sort the cards array by price
-            cards.sort((a, b) => {
-
-                const priceA = parseFloat(a.querySelector('.price').textContent.replace(/[^0-9.]/g, ''));
-                const priceB = parseFloat(b.querySelector('.price').textContent.replace(/[^0-9.]/g, ''));
-
-                return direction === 'low-high'
-                    ? priceA - priceB
-                    : priceB - priceA;
-            });
-
-            // 4) Remove all existing cards and re-append them in sorted order
-            cards.forEach(card => container.appendChild(card));
+            const url = new URL(window.location.href);
+            url.searchParams.set('sort', select.value);
+            url.searchParams.delete('cursor');
+            window.location.href = url.toString();
         }
 
         return {sort}
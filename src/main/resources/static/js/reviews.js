@@ -0,0 +1,128 @@
+/**
+ * Module for paging through the reviews on the product page.
+ * Changes the review sort order and appends further pages of reviews
+ * fetched from the reviews API when "load more" is clicked.
+ * @module reviewsHandler
+ */
+(function(){
+
+    /** @type {string} SVG of a filled star. */
+    const FULL_STAR = '<svg xmlns="http://www.w3.org/2000/svg" width="20" height="20" viewBox="0 0 20 20"><path fill="#eec300" d="m10 15l-5.878 3.09l1.123-6.545L.489 6.91l6.572-.955L10 0l2.939 5.955l6.572.955l-4.756 4.635l1.123 6.545z"/></svg>';
+
+    /** @type {string} SVG of an empty star. */
+    const EMPTY_STAR = '<svg xmlns="http://www.w3.org/2000/svg" width="20" height="20" viewBox="0 0 16 16"><path fill="#eec300" d="m16 6.204l-5.528-.803L8 .392L5.528 5.401L0 6.204l4 3.899l-.944 5.505L8 13.009l4.944 2.599L12 10.103zm-8 5.569l-3.492 1.836l.667-3.888L2.35 6.968l3.904-.567L8 2.864l1.746 3.537l3.904.567l-2.825 2.753l.667 3.888z"/></svg>';
+
+    /** @type {string} SVG of the reviewer avatar. */
+    const AVATAR = '<svg xmlns="http://www.w3.org/2000/svg" width="35" height="35" viewBox="0 0 16 16"><path fill="#6c757d" d="M8 16A8 8 0 1 1 8 0a8 8 0 0 1 0 16m.847-8.145a2.502 2.502 0 1 0-1.694 0C5.471 8.261 4 9.775 4 11c0 .395.145.995 1 .995h6c.855 0 1-.6 1-.995c0-1.224-1.47-2.74-3.153-3.145"/></svg>';
+
+    /**
+     * Namespace for review paging logic.
+     * @namespace handleReviews
+     */
+    const handleReviews = (() => {
+
+        /**
+         * Formats an ISO date-time as dd/MM/yyyy.
+         * @function formatDate
+         * @memberof handleReviews
+         * @param {string} createdAt - ISO local date-time, e.g. "2025-06-01T10:15:00".
+         * @returns {string} The formatted date.
+         */
+        function formatDate(createdAt) {
+            const [year, month, day] = createdAt.substring(0, 10).split('-');
+            return `${day}/${month}/${year}`;
+        }
+
+        /**
+         * Builds the card of a single review.
+         * @function createReview
+         * @memberof handleReviews
+         * @param {Object} review - Review with username, createdAt, rating, commentTitle and comment.
+         * @returns {HTMLElement} The review card.
+         */
+        function createReview(review) {
+            const card = document.createElement('div');
+            card.className = 'col-12 col-md-10 col-lg-8 border rounded p-3 mt-2';
+            card.innerHTML = `
+                <div class="row">
+                    <div class="col-12 d-flex align-items-center">${AVATAR}<span class="ms-2 fs-6 review-username"></span></div>
+                    <div class="col-12"><p class="mb-0 review-date"></p></div>
+                    <div class="col-12">${FULL_STAR.repeat(review.rating)}${EMPTY_STAR.repeat(5 - review.rating)}</div>
+                    <div class="col-12 mt-1">
+                        <h3 class="fs-5 review-title"></h3>
+                        <p class="m-0 p-0 fs-6 review-comment"></p>
+                    </div>
+                </div>`;
+            card.querySelector('.review-username').textContent = review.username;
+            card.querySelector('.review-date').textContent = formatDate(review.createdAt);
+            card.querySelector('.review-title').textContent = review.commentTitle;
+            card.querySelector('.review-comment').textContent = review.comment;
+            return card;
+        }
+
+        /**
+         * Fetches the next page of reviews and appends it to the list.
+         * Hides the button once the last page was loaded.
+         * @async
+         * @function loadMore
+         * @memberof handleReviews
+         * @param {Event} e - The click event of the "load more" button.
+         */
+        async function loadMore(e) {
+            const button = e.currentTarget;
+            const { productId, cursor, sort } = button.dataset;
+            button.disabled = true;
+            try {
+                const response = await fetch(
+                    `/api/products/${productId}/reviews?sort=${encodeURIComponent(sort)}&cursor=${encodeURIComponent(cursor)}`
+                );
+                if (!response.ok) {
+                    throw new Error('Loading reviews failed');
+                }
+                const page = await response.json();
+                const list = document.getElementById('reviews-list');
+                page.reviews.forEach(review => list.appendChild(createReview(review)));
+                if (page.nextCursor) {
+                    button.dataset.cursor = page.nextCursor;
+                } else {
+                    button.remove();
+                }
+            } catch (err) {
+                console.error(err);
+            } finally {
+                button.disabled = false;
+            }
+        }
+
+        /**
+         * Reloads the product page with the selected review sort order.
+         * @function sort
+         * @memberof handleReviews
+         * @param {Event} e - The change event of the sort select.
+         */
+        function sort(e) {
+            const url = new URL(window.location.href);
+            url.searchParams.set('reviewSort', e.target.value);
+            url.hash = 'reviews';
+            window.location.href = url.toString();
+        }
+
+        return { loadMore, sort };
+    })()
+
+    /**
+     * Attaches the review listeners on DOMContentLoaded.
+     */
+    document.addEventListener('DOMContentLoaded', () => {
+        const loadMoreButton = document.getElementById('load-more-reviews');
+        const sortSelect = document.getElementById('review-sort-select');
+
+        if (loadMoreButton) {
+            loadMoreButton.addEventListener('click', handleReviews.loadMore);
+        }
+        if (sortSelect) {
+            sortSelect.addEventListener('change', handleReviews.sort);
+        }
+    })
+
+})()
@@ -0,0 +1,66 @@
+package com.example.ex4.repo;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderRepositoryTests {
+
+    private static final int ITEM_COUNT = 120;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void largeOrderIsInsertedInBatches() {
+        Category category = entityManager.persist(new Category("Home"));
+        Product product = new Product("Chair", "A chair", 10, 1000);
+        product.setCategory(category);
+        product.setImageUrl("chair.png");
+        entityManager.persistAndFlush(product);
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Order order = newOrder();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            OrderItem item = new OrderItem(product, 1);
+            item.setOrder(order);
+            order.setOrderItems(item);
+        }
+        orderRepository.save(order);
+        entityManager.flush();
+
+        // one order insert, three order item batches of up to 50 rows, and a few
+        // pooled sequence calls; without batching this takes over 120 statements
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ITEM_COUNT + 1);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(9);
+    }
+
+    private Order newOrder() {
+        Order order = new Order();
+        order.setNameOnCard("Jane Doe");
+        order.setStreetAddress("Main 1");
+        order.setCity("Haifa");
+        order.setCountry("Israel");
+        order.setZipCode("12345");
+        order.setExpirationDate(YearMonth.now().plusYears(1));
+        order.setTotalPayment(ITEM_COUNT * 10);
+        return order;
+    }
+}